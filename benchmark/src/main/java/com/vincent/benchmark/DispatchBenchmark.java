@@ -0,0 +1,68 @@
+package com.vincent.benchmark;
+
+import com.vincent.benchmark.support.StubHttpServletRequest;
+import com.vincent.benchmark.support.StubHttpServletResponse;
+import com.vincent.benchmark.support.StubServletConfig;
+import com.vincent.spring.framework.webmvc.servlet.VincentDispatcherServlet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次完整的分发：service -> getHandler -> 参数绑定 -> 调用 -> 输出
+ * 使用 demo 应用和 benchmark.properties 里的配置（关闭了响应缓存）；
+ * queryCached 使用 application.properties，测 @VincentCacheable 命中缓存时的分发
+ * @author vincent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+    private VincentDispatcherServlet servlet;
+    private VincentDispatcherServlet cachingServlet;
+    private final StubHttpServletResponse response = new StubHttpServletResponse();
+
+    private final StubHttpServletRequest queryRequest = new StubHttpServletRequest("GET", "/web/query.json")
+            .setParameter("name", "vincent");
+    private final StubHttpServletRequest addRequest = new StubHttpServletRequest("POST", "/web/addUser.json")
+            .setParameter("name", "vincent").setParameter("addr", "shenzhen");
+
+    @Setup
+    public void setUp() throws Exception {
+        servlet = new VincentDispatcherServlet();
+        servlet.init(new StubServletConfig("classpath:benchmark.properties"));
+        cachingServlet = new VincentDispatcherServlet();
+        cachingServlet.init(new StubServletConfig("classpath:application.properties"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+        cachingServlet.destroy();
+    }
+
+    @Benchmark
+    public int query() throws Exception {
+        response.reset();
+        servlet.service(queryRequest, response);
+        return response.getContentSize();
+    }
+
+    @Benchmark
+    public int queryCached() throws Exception {
+        response.reset();
+        cachingServlet.service(queryRequest, response);
+        return response.getContentSize();
+    }
+
+    @Benchmark
+    public int add() throws Exception {
+        response.reset();
+        servlet.service(addRequest, response);
+        return response.getContentSize();
+    }
+}
@@ -0,0 +1,98 @@
+package com.vincent.benchmark;
+
+import com.vincent.benchmark.support.StubHttpServletRequest;
+import com.vincent.benchmark.support.StubHttpServletResponse;
+import com.vincent.demo.action.MyAction;
+import com.vincent.spring.framework.context.VincentApplicationContext;
+import com.vincent.spring.framework.webmvc.servlet.VincentHandlerAdapter;
+import com.vincent.spring.framework.webmvc.servlet.VincentHandlerMapping;
+import com.vincent.spring.framework.webmvc.servlet.VincentMethodHandleInvoker;
+import com.vincent.spring.framework.webmvc.servlet.VincentModelAndView;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 参数绑定 + 方法调用：VincentHandlerAdapter.handler 调用 MyAction 的四种方法签名
+ * invoker 对应 application.properties 里的 handlerInvoker
+ * @author vincent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandlerAdapterBenchmark {
+
+    @Param({"methodHandle", "reflective"})
+    public String invoker;
+
+    private final VincentHandlerAdapter adapter = new VincentHandlerAdapter();
+    private final StubHttpServletResponse response = new StubHttpServletResponse();
+
+    private VincentHandlerMapping query;
+    private VincentHandlerMapping add;
+    private VincentHandlerMapping remove;
+    private VincentHandlerMapping edit;
+
+    private final StubHttpServletRequest queryRequest = new StubHttpServletRequest("GET", "/web/query.json")
+            .setParameter("name", "vincent");
+    private final StubHttpServletRequest addRequest = new StubHttpServletRequest("GET", "/web/addUser.json")
+            .setParameter("name", "vincent").setParameter("addr", "shenzhen");
+    private final StubHttpServletRequest removeRequest = new StubHttpServletRequest("GET", "/web/remove.json")
+            .setParameter("id", "42");
+    private final StubHttpServletRequest editRequest = new StubHttpServletRequest("GET", "/web/edit.json")
+            .setParameter("id", "42").setParameter("name", "vincent");
+
+    @Setup
+    public void setUp() throws Exception {
+        VincentApplicationContext context = new VincentApplicationContext("classpath:application.properties");
+        MyAction action = context.getBean(MyAction.class);
+        query = mapping(action, "query", String.class);
+        add = mapping(action, "add", String.class, String.class);
+        remove = mapping(action, "remove", Integer.class);
+        edit = mapping(action, "edit", Integer.class, String.class);
+    }
+
+    @Benchmark
+    public VincentModelAndView query() throws Exception {
+        response.reset();
+        return adapter.handler(queryRequest, response, query);
+    }
+
+    @Benchmark
+    public VincentModelAndView add() throws Exception {
+        response.reset();
+        return adapter.handler(addRequest, response, add);
+    }
+
+    @Benchmark
+    public VincentModelAndView remove() throws Exception {
+        response.reset();
+        return adapter.handler(removeRequest, response, remove);
+    }
+
+    @Benchmark
+    public VincentModelAndView edit() throws Exception {
+        response.reset();
+        return adapter.handler(editRequest, response, edit);
+    }
+
+    private VincentHandlerMapping mapping(MyAction action, String name, Class<?>... paramTypes) throws Exception {
+        Class<?>[] signature = new Class<?>[paramTypes.length + 2];
+        signature[0] = HttpServletRequest.class;
+        signature[1] = HttpServletResponse.class;
+        System.arraycopy(paramTypes, 0, signature, 2, paramTypes.length);
+        Method method = MyAction.class.getMethod(name, signature);
+
+        VincentHandlerMapping mapping = new VincentHandlerMapping("/web/" + name + ".json", action, method);
+        if ("methodHandle".equals(invoker)) {
+            mapping.setInvoker(new VincentMethodHandleInvoker(action, method));
+        }
+        return mapping;
+    }
+}
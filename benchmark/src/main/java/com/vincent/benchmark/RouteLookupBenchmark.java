@@ -0,0 +1,96 @@
+package com.vincent.benchmark;
+
+import com.vincent.benchmark.support.StubHttpServletRequest;
+import com.vincent.spring.framework.webmvc.servlet.VincentHandlerMapping;
+import com.vincent.spring.framework.webmvc.servlet.VincentRouteIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由查找：和 VincentDispatcherServlet.getHandler 相同的步骤（去掉 contextPath，再查 VincentRouteIndex）
+ * mappings 为注册的 url 数量，其中 3/4 是纯文本段，1/4 是段内通配（如 /module7/add*.json）
+ * cacheSize = 0 时每次都走前缀树，用来衡量缓存未命中时的代价
+ * @author vincent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteLookupBenchmark {
+
+    private static final String CONTEXT_PATH = "/app";
+
+    @Param({"10", "100", "1000"})
+    public int mappings;
+
+    @Param({"1024", "0"})
+    public int cacheSize;
+
+    private VincentRouteIndex routeIndex;
+    private StubHttpServletRequest[] literalRequests;
+    private StubHttpServletRequest[] wildcardRequests;
+    private StubHttpServletRequest[] missingRequests;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws Exception {
+        Method method = RouteLookupBenchmark.class.getMethod("handle");
+        routeIndex = new VincentRouteIndex(cacheSize);
+        for (int i = 0; i < mappings; i++) {
+            String url = i % 4 == 3 ? "/module" + i + "/add*.json" : "/module" + i + "/query" + i + ".json";
+            routeIndex.register(url, new VincentHandlerMapping(url, this, method));
+        }
+
+        //每组 16 个不同的 url，轮流访问
+        literalRequests = new StubHttpServletRequest[16];
+        wildcardRequests = new StubHttpServletRequest[16];
+        missingRequests = new StubHttpServletRequest[16];
+        for (int i = 0; i < 16; i++) {
+            int literal = (i * 4) % mappings;
+            int wildcard = (i * 4 + 3) % mappings;
+            literalRequests[i] = request("/module" + literal + "/query" + literal + ".json");
+            wildcardRequests[i] = request("/module" + wildcard + "/addUser" + i + ".json");
+            missingRequests[i] = request("/module" + literal + "/missing" + i + ".json");
+        }
+    }
+
+    public void handle() {
+    }
+
+    @Benchmark
+    public VincentHandlerMapping literal() {
+        return getHandler(literalRequests[(cursor++) & 15]);
+    }
+
+    @Benchmark
+    public VincentHandlerMapping wildcard() {
+        return getHandler(wildcardRequests[(cursor++) & 15]);
+    }
+
+    @Benchmark
+    public VincentHandlerMapping notFound() {
+        return getHandler(missingRequests[(cursor++) & 15]);
+    }
+
+    private VincentHandlerMapping getHandler(StubHttpServletRequest req) {
+        String url = req.getRequestURI();
+        String contextPath = req.getContextPath();
+        if (contextPath != null && contextPath.length() > 0 && url.startsWith(contextPath)) {
+            url = url.substring(contextPath.length());
+        }
+        if (url.indexOf("//") >= 0) {
+            url = url.replaceAll("/+", "/");
+        }
+        return routeIndex.lookup(url);
+    }
+
+    private static StubHttpServletRequest request(String url) {
+        StubHttpServletRequest request = new StubHttpServletRequest("GET", CONTEXT_PATH + url);
+        request.setContextPath(CONTEXT_PATH);
+        return request;
+    }
+}
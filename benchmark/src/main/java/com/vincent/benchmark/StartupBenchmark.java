@@ -0,0 +1,37 @@
+package com.vincent.benchmark;
+
+import com.vincent.benchmark.support.StubServletConfig;
+import com.vincent.spring.framework.context.VincentApplicationContext;
+import com.vincent.spring.framework.webmvc.servlet.VincentDispatcherServlet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动耗时：IoC 容器，以及包含 HandlerMapping、视图解析器在内的整个 DispatcherServlet 初始化
+ * 单次执行模式，每次都是一个全新的容器
+ * @author vincent
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(3)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final String CONFIG_LOCATION = "classpath:application.properties";
+
+    @Benchmark
+    public VincentApplicationContext applicationContext() {
+        return new VincentApplicationContext(CONFIG_LOCATION);
+    }
+
+    @Benchmark
+    public VincentDispatcherServlet dispatcherServlet() throws Exception {
+        VincentDispatcherServlet servlet = new VincentDispatcherServlet();
+        servlet.init(new StubServletConfig(CONFIG_LOCATION));
+        servlet.destroy();
+        return servlet;
+    }
+}
@@ -0,0 +1,71 @@
+package com.vincent.benchmark;
+
+import com.vincent.benchmark.support.StubHttpServletRequest;
+import com.vincent.benchmark.support.StubHttpServletResponse;
+import com.vincent.spring.framework.webmvc.servlet.VincentView;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模板渲染：VincentView.render 渲染 layouts 下的模板
+ * 模板在 benchmarks.jar 里，Setup 时先复制到临时目录（VincentView 只接受文件）
+ * @author vincent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ViewRenderBenchmark {
+
+    @Param({"first.html", "404.html", "500.html"})
+    public String template;
+
+    @Param({"false", "true"})
+    public boolean htmlEscape;
+
+    private final StubHttpServletRequest request = new StubHttpServletRequest("GET", "/first.html");
+    private final StubHttpServletResponse response = new StubHttpServletResponse();
+    private final Map<String, Object> model = new HashMap<String, Object>();
+
+    private File templateFile;
+    private VincentView view;
+
+    @Setup
+    public void setUp() throws Exception {
+        templateFile = File.createTempFile("vincent-", "-" + template);
+        InputStream in = ViewRenderBenchmark.class.getClassLoader().getResourceAsStream("layouts/" + template);
+        try {
+            Files.copy(in, templateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            in.close();
+        }
+        view = new VincentView(templateFile, htmlEscape);
+
+        model.put("name", "Vincent <vincent@example.com>");
+        model.put("data", "探索Spring的世界 & MVC");
+        model.put("token", "3f2a9c1e-7d4b-4e0a-9b8c-5a6d7e8f9a0b");
+        model.put("detail", "Request Parameter Error: id");
+        model.put("stackTrace", "java.lang.IllegalArgumentException: id\n\tat com.vincent.demo.action.MyAction.remove(MyAction.java:48)");
+    }
+
+    @TearDown
+    public void tearDown() {
+        templateFile.delete();
+    }
+
+    @Benchmark
+    public int render() throws Exception {
+        response.reset();
+        view.render(model, request, response);
+        return response.getContentSize();
+    }
+}
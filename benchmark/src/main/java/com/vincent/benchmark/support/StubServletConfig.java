@@ -0,0 +1,41 @@
+package com.vincent.benchmark.support;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 初始化 DispatcherServlet 用的 ServletConfig
+ * @author vincent
+ */
+public class StubServletConfig implements ServletConfig {
+
+    private final Map<String, String> initParameters = new HashMap<String, String>();
+
+    public StubServletConfig(String contextConfigLocation) {
+        initParameters.put("contextConfigLocation", contextConfigLocation);
+    }
+
+    @Override
+    public String getServletName() {
+        return "vincentmvc";
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    public String getInitParameter(String name) {
+        return initParameters.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getInitParameterNames() {
+        return Collections.enumeration(initParameters.keySet());
+    }
+}
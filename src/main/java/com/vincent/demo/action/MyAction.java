@@ -3,6 +3,8 @@ package com.vincent.demo.action;
 import com.vincent.demo.service.IModifyService;
 import com.vincent.demo.service.IQueryService;
 import com.vincent.spring.framework.annotation.VincentAutowired;
+import com.vincent.spring.framework.annotation.VincentCacheable;
+import com.vincent.spring.framework.annotation.VincentConcurrencyLimit;
 import com.vincent.spring.framework.annotation.VincentController;
 import com.vincent.spring.framework.annotation.VincentRequestMapping;
 import com.vincent.spring.framework.annotation.VincentRequestParam;
@@ -10,6 +12,8 @@ import com.vincent.spring.framework.annotation.VincentRequestParam;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Map;
 
 /**
  * 公共接口 url
@@ -18,15 +22,19 @@ import java.io.IOException;
 @VincentRequestMapping("/web")
 public class MyAction {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     @VincentAutowired IQueryService queryService;
 
     @VincentAutowired IModifyService modifyService;
 
+    @VincentCacheable(ttl = 10)
+    @VincentConcurrencyLimit(value = 64, queue = 16)
     @VincentRequestMapping("/query.json")
-    public void query(HttpServletRequest request, HttpServletResponse response,
-                      @VincentRequestParam("name") String name){
-        String result = queryService.query(name);
-        out(response,result);
+    public Map<String, Object> query(HttpServletRequest request, HttpServletResponse response,
+                                     @VincentRequestParam("name") String name){
+        //返回值由框架转换成JSON输出
+        return queryService.query(name);
     }
 
     @VincentRequestMapping("/add*.json")
@@ -52,7 +60,11 @@ public class MyAction {
 
     private void out(HttpServletResponse response, String result) {
         try {
-            response.getWriter().write(result);
+            //直接写UTF-8字节，并告诉容器长度
+            byte[] bytes = result.getBytes(UTF_8);
+            response.setCharacterEncoding("utf-8");
+            response.setContentLength(bytes.length);
+            response.getOutputStream().write(bytes);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -19,7 +19,7 @@ public class PageAction {
 
     @VincentRequestMapping("/first.html")
     public VincentModelAndView query(@VincentRequestParam("name") String name){
-        String result = queryService.query(name);
+        Map<String,Object> result = queryService.query(name);
         Map<String,Object> model = new HashMap<String, Object>();
         model.put("name",name);
         model.put("data",result);
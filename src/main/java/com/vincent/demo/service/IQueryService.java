@@ -1,6 +1,8 @@
 package com.vincent.demo.service;
 
+import java.util.Map;
+
 public interface IQueryService {
 
-    String query(String name);
+    Map<String, Object> query(String name);
 }
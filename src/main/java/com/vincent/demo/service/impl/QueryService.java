@@ -6,6 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 查询业务
@@ -21,12 +23,15 @@ public class QueryService implements IQueryService {
      * @return
      */
     @Override
-    public String query(String name){
+    public Map<String, Object> query(String name){
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         String time = sdf.format(new Date());
-        String json = "{name:\"" + name + "\",time:\"" + time + "\"}";
-        log.info("这是在业务方法中打印的：" + json);
-        return json;
+        //由框架转换成JSON，不再手工拼接
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("name", name);
+        result.put("time", time);
+        log.info("这是在业务方法中打印的：" + result);
+        return result;
     }
 
 }
@@ -0,0 +1,32 @@
+package com.vincent.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Handler的HTTP缓存策略，可以加在Controller类或方法上，方法上的优先
+ * 输出 Cache-Control；lastModified = true 时输出 Last-Modified 并在调用Handler之前处理 If-Modified-Since，
+ * 时间取Controller实现的 VincentLastModified，没有实现时取应用启动时间
+ * @author vincent
+ */
+@Target({ElementType.METHOD,ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface VincentCacheControl {
+
+    /**
+     * max-age，单位秒，小于0时不输出
+     */
+    long maxAge() default -1;
+
+    boolean noCache() default false;
+
+    boolean noStore() default false;
+
+    boolean mustRevalidate() default false;
+
+    boolean cachePrivate() default false;
+
+    boolean cachePublic() default false;
+
+    boolean lastModified() default false;
+}
@@ -0,0 +1,25 @@
+package com.vincent.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 缓存Handler方法的完整响应（状态200的输出字节）
+ * 缓存key为 路由 + 选定的请求参数，命中时不再绑定参数、调用方法
+ * 只对 GET / HEAD 请求生效，需要打开 responseCacheEnabled
+ * @author vincent
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface VincentCacheable {
+
+    /**
+     * 参与缓存key的请求参数，默认为方法上所有 @VincentRequestParam 的参数
+     */
+    String[] params() default {};
+
+    /**
+     * 过期时间，单位秒
+     */
+    long ttl() default 60;
+}
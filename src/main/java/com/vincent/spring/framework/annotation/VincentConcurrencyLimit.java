@@ -0,0 +1,39 @@
+package com.vincent.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 限制一个路由同时处理的请求数，超过时直接返回503和Retry-After，慢路由不会占满所有线程
+ * 可以标注在方法或Controller上，方法上的优先；需要打开 concurrencyLimitEnabled
+ * @author vincent
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface VincentConcurrencyLimit {
+
+    /**
+     * 同时处理的最大请求数，自适应模式下为上限
+     */
+    int value();
+
+    /**
+     * 达到上限时最多等待的请求数，0 表示不等待直接拒绝
+     */
+    int queue() default 0;
+
+    /**
+     * 排队的最长等待时间，单位毫秒
+     */
+    long queueTimeout() default 50;
+
+    /**
+     * 根据观察到的延迟自动调整限制（AIMD），延迟明显升高时减小，恢复后逐步增大到 value
+     */
+    boolean adaptive() default false;
+
+    /**
+     * 拒绝时 Retry-After 的秒数
+     */
+    int retryAfter() default 1;
+}
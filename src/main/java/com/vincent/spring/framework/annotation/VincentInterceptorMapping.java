@@ -0,0 +1,32 @@
+package com.vincent.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在 VincentHandlerInterceptor 的实现类上，指定拦截的路由
+ * 纯文本的路由（如 /web/query.json）在启动时用声明的 url 匹配，请求时不再匹配；
+ * 带通配符的路由（如 /web/add*.json、/admin/**）对应很多实际路径，value 和 exclude 都按每个请求的实际路径匹配，
+ * 例如 value = "/web/addUser.json" 的拦截器会拦截路由 /web/add*.json 上的 /web/addUser.json 请求，不拦截 /web/addRole.json
+ * 模式里 * 匹配一段内的任意字符，** 匹配任意多段；没有这个注解时拦截所有路由
+ * @author vincent
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface VincentInterceptorMapping {
+
+    /**
+     * 拦截的路由
+     */
+    String[] value() default {"/**"};
+
+    /**
+     * 排除的路由，优先于 value
+     */
+    String[] exclude() default {};
+
+    /**
+     * 执行顺序，小的先执行 preHandle，afterCompletion 按相反的顺序执行
+     */
+    int order() default 0;
+}
@@ -11,7 +11,17 @@ import java.lang.annotation.*;
 @Documented
 public @interface VincentRequestParam {
 
+    /**
+     * 表示没有配置默认值，普通字符串不可能和它相等
+     */
+    String DEFAULT_NONE = "\n\t\t\n\t\t\n\n\t\t\t\t\n";
+
     String value() default "";
 
     boolean required() default true;
+
+    /**
+     * 请求中没有该参数时使用的默认值，配置了默认值相当于 required = false
+     */
+    String defaultValue() default DEFAULT_NONE;
 }
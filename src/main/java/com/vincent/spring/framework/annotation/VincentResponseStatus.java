@@ -0,0 +1,20 @@
+package com.vincent.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在异常类上，Handler抛出该异常（或其子类）时返回指定的状态码
+ * 优先级低于配置文件里的 exceptionStatusMappings
+ * @author vincent
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface VincentResponseStatus {
+
+    /**
+     * HTTP状态码
+     */
+    int value();
+}
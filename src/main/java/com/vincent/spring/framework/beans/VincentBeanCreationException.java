@@ -0,0 +1,16 @@
+package com.vincent.spring.framework.beans;
+
+/**
+ * bean 创建失败，例如依赖找不到、出现不允许的循环依赖
+ * @author vincent
+ */
+public class VincentBeanCreationException extends RuntimeException {
+
+    public VincentBeanCreationException(String message) {
+        super(message);
+    }
+
+    public VincentBeanCreationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,14 +1,15 @@
 package com.vincent.spring.framework.beans.support;
 
 import com.vincent.spring.framework.beans.config.VincentBeanDefinition;
+import com.vincent.spring.framework.context.index.VincentComponentIndexer;
+import com.vincent.spring.framework.core.startup.VincentStartupProfiler;
+import com.vincent.spring.framework.core.startup.VincentStartupStep;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Properties;
+import java.util.*;
 
 /**
  * bean 的 reader
@@ -16,15 +17,46 @@ import java.util.Properties;
  */
 public class VincentBeanDefinitionReader {
 
+    //componentIndex：auto（默认，有索引就用索引），true（必须使用索引），false（总是扫描）
+    private static final String COMPONENT_INDEX_AUTO = "auto";
+
     //保存扫描的结果
     private List<String> regitryBeanClasses = new ArrayList<String>();
     private Properties contextConfig = new Properties();
 
+    //编译期生成的组件索引：类名 -> 注解名,接口名...，为null表示使用扫描
+    private Map<String,String> componentIndex;
+
+    private final VincentStartupProfiler startupProfiler;
+
     public VincentBeanDefinitionReader(String... configLocations) {
+        this(new VincentStartupProfiler(), configLocations);
+    }
+
+    public VincentBeanDefinitionReader(VincentStartupProfiler startupProfiler, String... configLocations) {
+        this.startupProfiler = startupProfiler;
         doLoadConfig(configLocations[0]);
 
-        //扫描配置文件中的配置的相关的类
-        doScanner(contextConfig.getProperty("scanPackage"));
+        //读了配置文件才知道是否打开启动统计
+        if(Boolean.parseBoolean(contextConfig.getProperty("startupProfilerEnabled","false").trim())){
+            startupProfiler.enable();
+        }
+
+        VincentStartupStep step = startupProfiler.start("context.scanComponents");
+        String scanPackage = contextConfig.getProperty("scanPackage");
+        String indexMode = contextConfig.getProperty("componentIndex", COMPONENT_INDEX_AUTO).trim();
+        if(!"false".equals(indexMode)){
+            componentIndex = doLoadComponentIndex(scanPackage);
+            if(componentIndex == null && "true".equals(indexMode)){
+                throw new IllegalStateException("componentIndex=true but no " + VincentComponentIndexer.COMPONENTS_RESOURCE_LOCATION + " found");
+            }
+        }
+
+        if(componentIndex == null){
+            //扫描配置文件中的配置的相关的类
+            doScanner(scanPackage);
+        }
+        step.end();
     }
 
     public Properties getConfig(){
@@ -32,6 +64,18 @@ public class VincentBeanDefinitionReader {
     }
 
     public List<VincentBeanDefinition> loadBeanDefinitions() {
+        VincentStartupStep step = startupProfiler.start("context.loadBeanDefinitions");
+        try {
+            return doLoadBeanDefinitions();
+        } finally {
+            step.end();
+        }
+    }
+
+    private List<VincentBeanDefinition> doLoadBeanDefinitions() {
+        if(componentIndex != null){
+            return loadBeanDefinitionsFromIndex();
+        }
         List<VincentBeanDefinition> result = new ArrayList<VincentBeanDefinition>();
         try {
             for (String className : regitryBeanClasses) {
@@ -42,10 +86,7 @@ public class VincentBeanDefinitionReader {
                 //1、默认是类名首字母小写
                 result.add(doCreateBeanDefinition(toLowerFirstCase(beanClass.getSimpleName()), beanClass.getName()));
                 //2、自定义
-                //3、接口注入
-                for (Class<?> i : beanClass.getInterfaces()) {
-                    result.add(doCreateBeanDefinition(i.getName(),beanClass.getName()));
-                }
+                //3、接口注入：由容器按类型索引解析，不再为每个接口单独注册一个BeanDefinition
 
             }
         }catch (Exception e){
@@ -55,6 +96,51 @@ public class VincentBeanDefinitionReader {
         return result;
     }
 
+    /**
+     * 索引里已经有类名，不需要加载任何类
+     */
+    private List<VincentBeanDefinition> loadBeanDefinitionsFromIndex() {
+        List<VincentBeanDefinition> result = new ArrayList<VincentBeanDefinition>();
+        for (Map.Entry<String,String> entry : componentIndex.entrySet()) {
+            String className = entry.getKey();
+            String simpleName = className.substring(Math.max(className.lastIndexOf('.'),className.lastIndexOf('$')) + 1);
+            result.add(doCreateBeanDefinition(toLowerFirstCase(simpleName),className));
+        }
+        return result;
+    }
+
+    /**
+     * 读取classpath下所有的组件索引（包括jar里的），只保留scanPackage下的类
+     * @return 没有任何索引时返回null
+     */
+    private Map<String,String> doLoadComponentIndex(String scanPackage) {
+        try {
+            Enumeration<URL> urls = this.getClass().getClassLoader().getResources(VincentComponentIndexer.COMPONENTS_RESOURCE_LOCATION);
+            if(!urls.hasMoreElements()){ return null; }
+
+            String prefix = scanPackage + ".";
+            Map<String,String> index = new TreeMap<String, String>();
+            while (urls.hasMoreElements()) {
+                Properties properties = new Properties();
+                InputStream is = urls.nextElement().openStream();
+                try {
+                    properties.load(is);
+                } finally {
+                    is.close();
+                }
+                for (String className : properties.stringPropertyNames()) {
+                    if(className.startsWith(prefix)){
+                        index.put(className,properties.getProperty(className));
+                    }
+                }
+            }
+            return index;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     private VincentBeanDefinition doCreateBeanDefinition(String beanName, String beanClassName) {
         VincentBeanDefinition beanDefinition = new VincentBeanDefinition();
         beanDefinition.setFactoryBeanName(beanName);
@@ -3,15 +3,16 @@ package com.vincent.spring.framework.context;
 import com.vincent.spring.framework.annotation.VincentAutowired;
 import com.vincent.spring.framework.annotation.VincentController;
 import com.vincent.spring.framework.annotation.VincentService;
+import com.vincent.spring.framework.beans.VincentBeanCreationException;
 import com.vincent.spring.framework.beans.VincentBeanWrapper;
 import com.vincent.spring.framework.beans.config.VincentBeanDefinition;
 import com.vincent.spring.framework.beans.support.VincentBeanDefinitionReader;
+import com.vincent.spring.framework.core.startup.VincentStartupProfiler;
+import com.vincent.spring.framework.core.startup.VincentStartupStep;
 
 import java.lang.reflect.Field;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  *  完成 bean 的 创建 和 DI注入
@@ -21,111 +22,408 @@ public class VincentApplicationContext {
 
     private VincentBeanDefinitionReader reader;
 
-    private Map<String,VincentBeanDefinition> beanDefinitionMap = new HashMap<String, VincentBeanDefinition>();
+    //以下两个索引构造完成后只读，运行时并发读取是安全的
+    //beanName -> BeanDefinition，每个类只注册一次
+    private final Map<String,VincentBeanDefinition> beanDefinitionMap = new LinkedHashMap<String, VincentBeanDefinition>();
+    //类型（类本身、所有父类和接口）的全名 -> 可以赋值给该类型的BeanDefinition
+    private final Map<String,List<VincentBeanDefinition>> beanDefinitionsByType = new HashMap<String, List<VincentBeanDefinition>>();
 
-    private Map<String,VincentBeanWrapper> factoryBeanInstanceCache = new HashMap<String, VincentBeanWrapper>();
-    private Map<String,Object> factoryBeanObjectCache = new HashMap<String, Object>();
+    //以下两个缓存都以beanName为key
+    //已经完成依赖注入的bean
+    private Map<String,VincentBeanWrapper> factoryBeanInstanceCache = new ConcurrentHashMap<String, VincentBeanWrapper>();
+    //已经实例化的bean，包括还没完成依赖注入的（循环依赖时提前暴露）
+    private Map<String,Object> factoryBeanObjectCache = new ConcurrentHashMap<String, Object>();
+    //创建bean时加的锁，已经创建好的bean读取时不加锁
+    private final Object singletonCreationLock = new Object();
+
+    private boolean allowCircularReferences = true;
+
+    //启动统计，没有打开时所有步骤都是空操作
+    private final VincentStartupProfiler startupProfiler;
 
     public VincentApplicationContext(String... configLocations) {
+        this(new VincentStartupProfiler(), configLocations);
+    }
+
+    public VincentApplicationContext(VincentStartupProfiler startupProfiler, String... configLocations) {
+        this.startupProfiler = startupProfiler;
 
         //1、加载配置文件
-        reader = new VincentBeanDefinitionReader(configLocations);
+        reader = new VincentBeanDefinitionReader(startupProfiler, configLocations);
 
         try {
             //2、解析配置文件，封装成BeanDefinition
             List<VincentBeanDefinition> beanDefinitions = reader.loadBeanDefinitions();
 
             //3、把BeanDefintion缓存起来
+            VincentStartupStep step = startupProfiler.start("context.registerBeanDefinitions");
             doRegistBeanDefinition(beanDefinitions);
+            step.end();
+
+            this.allowCircularReferences = Boolean.parseBoolean(
+                    getConfig().getProperty("allowCircularReferences","true").trim());
 
             doAutowrited();
+        }catch (VincentBeanCreationException e){
+            throw e;
         }catch (Exception e){
             e.printStackTrace();
         }
     }
 
-    private void doAutowrited() {
-        //调用getBean()
-        //这一步，所有的Bean并没有真正的实例化，还只是配置阶段
-        for (Map.Entry<String,VincentBeanDefinition> beanDefinitionEntry : this.beanDefinitionMap.entrySet()) {
-            String beanName = beanDefinitionEntry.getKey();
-            getBean(beanName);
+    /**
+     * 按 @VincentAutowired 建立依赖图，按拓扑顺序一层一层创建bean：
+     * 同一层的bean互不依赖，并行创建；剩下的就是循环依赖，先全部实例化、提前暴露，再统一注入
+     */
+    private void doAutowrited() throws Exception {
+        //1、排序保证顺序稳定
+        VincentStartupStep step = startupProfiler.start("context.resolveDependencies");
+        Map<String,Class<?>> beanClasses = new TreeMap<String, Class<?>>();
+        for (VincentBeanDefinition beanDefinition : this.beanDefinitionMap.values()) {
+            beanClasses.put(beanDefinition.getFactoryBeanName(),Class.forName(beanDefinition.getBeanClassName()));
+        }
+
+        //2、依赖图：beanName -> 依赖的beanName
+        Map<String,Set<String>> dependencies = new HashMap<String, Set<String>>();
+        for (Map.Entry<String,Class<?>> entry : beanClasses.entrySet()) {
+            Set<String> dependsOn = new TreeSet<String>();
+            for (Field field : getAutowiredFields(entry.getValue())) {
+                dependsOn.add(resolveAutowiredDefinition(entry.getKey(),field).getFactoryBeanName());
+            }
+            dependencies.put(entry.getKey(),dependsOn);
+        }
+        step.end();
+
+        //3、懒加载模式下只校验依赖，第一次getBean时再创建
+        if(Boolean.parseBoolean(getConfig().getProperty("lazyInit","false").trim())){
+            return;
+        }
+
+        //4、按层创建
+        int parallelism = Integer.parseInt(getConfig().getProperty("beanCreationParallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())).trim());
+        ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        step = startupProfiler.start("context.createBeans");
+        try {
+            Set<String> remaining = new TreeSet<String>(beanClasses.keySet());
+            List<String> wave;
+            while (!(wave = nextWave(remaining,dependencies)).isEmpty()) {
+                createBeans(wave,executor);
+                remaining.removeAll(wave);
+            }
+            if(!remaining.isEmpty()){
+                doCreateCircularBeans(remaining,dependencies);
+            }
+        } finally {
+            if(executor != null){
+                executor.shutdown();
+            }
+            step.end();
+        }
+    }
+
+    //依赖都已经创建好的bean
+    private List<String> nextWave(Set<String> remaining, Map<String,Set<String>> dependencies) {
+        List<String> wave = new ArrayList<String>();
+        for (String beanName : remaining) {
+            boolean ready = true;
+            for (String dependency : dependencies.get(beanName)) {
+                if(!dependency.equals(beanName) && remaining.contains(dependency)){
+                    ready = false;
+                    break;
+                }
+            }
+            if(ready){
+                wave.add(beanName);
+            }
         }
+        return wave;
+    }
+
+    //同一层的bean依赖都已经创建好，不需要加锁，可以直接并行创建
+    private void createBeans(List<String> wave, ExecutorService executor) throws Exception {
+        if(executor == null || wave.size() == 1){
+            for (String beanName : wave) {
+                doCreateBean(beanName,this.beanDefinitionMap.get(beanName));
+            }
+            return;
+        }
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (final String beanName : wave) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return doCreateBean(beanName,beanDefinitionMap.get(beanName));
+                }
+            }));
+        }
+        for (Future<Object> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if(e.getCause() instanceof Exception){
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void doCreateCircularBeans(Set<String> remaining, Map<String,Set<String>> dependencies) {
+        String cycle = describeCycle(remaining,dependencies);
+        if(!this.allowCircularReferences){
+            throw new VincentBeanCreationException("Circular reference detected : " + cycle);
+        }
+        System.out.println("Circular reference resolved by early references : " + cycle);
+
+        //先全部实例化，提前暴露到factoryBeanObjectCache，注入时可以拿到还没完成注入的实例
+        for (String beanName : remaining) {
+            VincentStartupStep step = startupProfiler.startBean(beanName,VincentStartupProfiler.INSTANTIATE);
+            instantiateBean(beanName,this.beanDefinitionMap.get(beanName));
+            step.end();
+        }
+        for (String beanName : remaining) {
+            synchronized (this.singletonCreationLock) {
+                doCreateBean(beanName,this.beanDefinitionMap.get(beanName));
+            }
+        }
+    }
+
+    private String describeCycle(Set<String> remaining, Map<String,Set<String>> dependencies) {
+        //从任意一个节点出发，沿着还没创建的依赖走，必然会回到走过的节点
+        List<String> path = new ArrayList<String>();
+        String current = remaining.iterator().next();
+        while (!path.contains(current)) {
+            path.add(current);
+            for (String dependency : dependencies.get(current)) {
+                if(remaining.contains(dependency)){
+                    current = dependency;
+                    break;
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String beanName : path.subList(path.indexOf(current),path.size())) {
+            sb.append(beanName).append(" -> ");
+        }
+        return sb.append(current).toString();
     }
 
     private void doRegistBeanDefinition(List<VincentBeanDefinition> beanDefinitions) throws Exception {
         for (VincentBeanDefinition beanDefinition : beanDefinitions) {
             if(this.beanDefinitionMap.containsKey(beanDefinition.getFactoryBeanName())){
-                throw new Exception("The " + beanDefinition.getFactoryBeanName() + "is exists");
+                throw new VincentBeanCreationException("The " + beanDefinition.getFactoryBeanName() + " is exists");
             }
             beanDefinitionMap.put(beanDefinition.getFactoryBeanName(),beanDefinition);
-            beanDefinitionMap.put(beanDefinition.getBeanClassName(),beanDefinition);
+
+            //按类型建立索引，一个实现类可以通过它的类、父类、接口找到
+            Set<String> typeNames = new LinkedHashSet<String>();
+            collectTypeNames(Class.forName(beanDefinition.getBeanClassName()),typeNames);
+            for (String typeName : typeNames) {
+                List<VincentBeanDefinition> candidates = beanDefinitionsByType.get(typeName);
+                if(candidates == null){
+                    candidates = new ArrayList<VincentBeanDefinition>(1);
+                    beanDefinitionsByType.put(typeName,candidates);
+                }
+                candidates.add(beanDefinition);
+            }
+        }
+    }
+
+    private void collectTypeNames(Class<?> type, Set<String> typeNames) {
+        if(type == null || type == Object.class || !typeNames.add(type.getName())){
+            return;
+        }
+        collectTypeNames(type.getSuperclass(),typeNames);
+        for (Class<?> i : type.getInterfaces()) {
+            collectTypeNames(i,typeNames);
         }
     }
 
     //Bean的实例化，DI是从而这个方法开始的
     public Object getBean(String beanName){
-        //1、先拿到BeanDefinition配置信息
+        //1、先拿到BeanDefinition配置信息，可以是beanName，也可以是类名、接口名
         VincentBeanDefinition beanDefinition = this.beanDefinitionMap.get(beanName);
-        //2、反射实例化newInstance();
+        if(beanDefinition == null){
+            List<VincentBeanDefinition> candidates = this.beanDefinitionsByType.get(beanName);
+            if(candidates == null){ return null; }
+            beanDefinition = determineCandidate(beanName,candidates,null);
+        }
+        return getSingleton(beanDefinition);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getBean(Class<T> beanClass){
+        List<VincentBeanDefinition> candidates = this.beanDefinitionsByType.get(beanClass.getName());
+        if(candidates == null){ return null; }
+        return (T) getSingleton(determineCandidate(beanClass.getName(),candidates,null));
+    }
+
+    /**
+     * bean的类型，只读取BeanDefinition，不会创建bean，懒加载的bean仍然是懒加载
+     * @return 没有对应的BeanDefinition时返回null
+     */
+    public Class<?> getType(String beanName){
+        VincentBeanDefinition beanDefinition = this.beanDefinitionMap.get(beanName);
+        if(beanDefinition == null){
+            List<VincentBeanDefinition> candidates = this.beanDefinitionsByType.get(beanName);
+            if(candidates == null){ return null; }
+            beanDefinition = determineCandidate(beanName,candidates,null);
+        }
+        try {
+            return Class.forName(beanDefinition.getBeanClassName());
+        } catch (ClassNotFoundException e) {
+            throw new VincentBeanCreationException("Failed to load bean class " + beanDefinition.getBeanClassName(), e);
+        }
+    }
+
+    /**
+     * 所有可以赋值给 type 的bean，beanName -> 实例
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String,T> getBeansOfType(Class<T> type){
+        List<VincentBeanDefinition> candidates = this.beanDefinitionsByType.get(type.getName());
+        if(candidates == null){ return Collections.emptyMap(); }
+        Map<String,T> beans = new LinkedHashMap<String, T>();
+        for (VincentBeanDefinition candidate : candidates) {
+            beans.put(candidate.getFactoryBeanName(),(T) getSingleton(candidate));
+        }
+        return beans;
+    }
+
+    private Object getSingleton(VincentBeanDefinition beanDefinition){
+        String beanName = beanDefinition.getFactoryBeanName();
+
+        //2、已经创建好的单例，一次无锁读取
+        VincentBeanWrapper beanWrapper = this.factoryBeanInstanceCache.get(beanName);
+        if(beanWrapper != null){
+            return beanWrapper.getWrapperInstance();
+        }
+
+        //3、还没创建（懒加载）或者正在创建（循环依赖），加锁保证只创建一次
+        synchronized (this.singletonCreationLock) {
+            beanWrapper = this.factoryBeanInstanceCache.get(beanName);
+            if(beanWrapper != null){
+                return beanWrapper.getWrapperInstance();
+            }
+            Object earlyInstance = this.factoryBeanObjectCache.get(beanName);
+            if(earlyInstance != null){
+                if(!this.allowCircularReferences){
+                    throw new VincentBeanCreationException("Circular reference detected : " + beanName + " is currently in creation");
+                }
+                return earlyInstance;
+            }
+            try {
+                return doCreateBean(beanName,beanDefinition);
+            } catch (RuntimeException e) {
+                //创建失败不能留下提前暴露的半成品
+                this.factoryBeanObjectCache.remove(beanName);
+                throw e;
+            }
+        }
+    }
+
+    //实例化、注入，完成后放进单例缓存
+    private Object doCreateBean(String beanName, VincentBeanDefinition beanDefinition) {
+        //1、反射实例化newInstance();
+        VincentStartupStep step = startupProfiler.startBean(beanName,VincentStartupProfiler.INSTANTIATE);
         Object instance = instantiateBean(beanName,beanDefinition);
-        //3、封装成一个叫做BeanWrapper
+        step.end();
+        //2、封装成一个叫做BeanWrapper
         VincentBeanWrapper beanWrapper = new VincentBeanWrapper(instance);
-        //4、保存到IoC容器
-        factoryBeanInstanceCache.put(beanName,beanWrapper);
-        //5、执行依赖注入
+        //3、执行依赖注入
+        step = startupProfiler.startBean(beanName,VincentStartupProfiler.POPULATE);
         populateBean(beanName,beanDefinition,beanWrapper);
+        step.end();
+        //4、保存到IoC容器，之后getBean直接返回
+        factoryBeanInstanceCache.put(beanName,beanWrapper);
 
         return beanWrapper.getWrapperInstance();
     }
 
     private void populateBean(String beanName, VincentBeanDefinition beanDefinition, VincentBeanWrapper beanWrapper) {
-        //可能涉及到循环依赖？
-        //A{ B b}
-        //B{ A b}
-        //用两个缓存，循环两次
-        //1、把第一次读取结果为空的BeanDefinition存到第一个缓存
-        //2、等第一次循环之后，第二次循环再检查第一次的缓存，再进行赋值
+        //依赖通过getSingleton获取：已经创建完成的直接返回，懒加载的在这里创建，
+        //正在创建中的（循环依赖）返回提前暴露的实例
 
         Object instance = beanWrapper.getWrapperInstance();
 
         Class<?> clazz = beanWrapper.getWrappedClass();
 
-        //在Spring中@Component
-        if(!(clazz.isAnnotationPresent(VincentController.class) || clazz.isAnnotationPresent(VincentService.class))){
-            return;
-        }
-
         //把所有的包括private/protected/default/public 修饰字段都取出来
-        for (Field field : clazz.getDeclaredFields()) {
-            if(!field.isAnnotationPresent(VincentAutowired.class)){ continue; }
-
-            VincentAutowired autowired = field.getAnnotation(VincentAutowired.class);
-
-            //如果用户没有自定义的beanName，就默认根据类型注入
-            String autowiredBeanName = autowired.value().trim();
-            if("".equals(autowiredBeanName)){
-                //field.getType().getName() 获取字段的类型
-                autowiredBeanName = field.getType().getName();
-            }
+        for (Field field : getAutowiredFields(clazz)) {
+            Object dependencyInstance = getSingleton(resolveAutowiredDefinition(beanName,field));
 
             //暴力访问
             field.setAccessible(true);
 
             try {
-                if(this.factoryBeanInstanceCache.get(autowiredBeanName) == null){
-                    continue;
-                }
                 //ioc.get(beanName) 相当于通过接口的全名拿到接口的实现的实例
-                field.set(instance,this.factoryBeanInstanceCache.get(autowiredBeanName).getWrapperInstance());
+                field.set(instance,dependencyInstance);
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
-                continue;
             }
         }
 
     }
 
+    //需要注入的字段，只有 @VincentController / @VincentService 才做注入
+    private List<Field> getAutowiredFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<Field>();
+        //在Spring中@Component
+        if(!(clazz.isAnnotationPresent(VincentController.class) || clazz.isAnnotationPresent(VincentService.class))){
+            return fields;
+        }
+        for (Field field : clazz.getDeclaredFields()) {
+            if(field.isAnnotationPresent(VincentAutowired.class)){
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 按类型注入：
+     * 1、@VincentAutowired("name") 指定了beanName（或者类名）时以它为准
+     * 2、否则按字段类型从类型索引里找，只有一个候选直接用
+     * 3、有多个候选时，用字段名作为beanName来区分
+     */
+    private VincentBeanDefinition resolveAutowiredDefinition(String beanName, Field field) {
+        VincentAutowired autowired = field.getAnnotation(VincentAutowired.class);
+        String qualifier = autowired.value().trim();
+        //field.getType().getName() 获取字段的类型
+        String typeName = field.getType().getName();
+
+        List<VincentBeanDefinition> candidates = this.beanDefinitionsByType.get(typeName);
+        if(!"".equals(qualifier)){
+            VincentBeanDefinition beanDefinition = this.beanDefinitionMap.get(qualifier);
+            if(beanDefinition == null && this.beanDefinitionsByType.containsKey(qualifier)){
+                beanDefinition = determineCandidate(qualifier,this.beanDefinitionsByType.get(qualifier),null);
+            }
+            if(beanDefinition == null || candidates == null || !candidates.contains(beanDefinition)){
+                throw new VincentBeanCreationException("No bean named " + qualifier + " of type " + typeName + " for " + beanName + "." + field.getName());
+            }
+            return beanDefinition;
+        }
+        if(candidates == null){
+            throw new VincentBeanCreationException("No bean of type " + typeName + " for " + beanName + "." + field.getName());
+        }
+        return determineCandidate(typeName,candidates,field.getName());
+    }
+
+    private VincentBeanDefinition determineCandidate(String typeName, List<VincentBeanDefinition> candidates, String fallbackName) {
+        if(candidates.size() == 1){
+            return candidates.get(0);
+        }
+        List<String> beanNames = new ArrayList<String>();
+        for (VincentBeanDefinition candidate : candidates) {
+            if(candidate.getFactoryBeanName().equals(fallbackName)){
+                return candidate;
+            }
+            beanNames.add(candidate.getFactoryBeanName());
+        }
+        throw new VincentBeanCreationException("Expected single bean of type " + typeName + " but found " + candidates.size() + " : " + beanNames);
+    }
+
 
     //创建真正的实例对象
     private Object instantiateBean(String beanName, VincentBeanDefinition beanDefinition) {
@@ -141,15 +439,11 @@ public class VincentApplicationContext {
                 this.factoryBeanObjectCache.put(beanName, instance);
             }
         }catch (Exception e){
-            e.printStackTrace();
+            throw new VincentBeanCreationException("Failed to instantiate " + className, e);
         }
         return instance;
     }
 
-    public Object getBean(Class beanClass){
-        return getBean(beanClass.getName());
-    }
-
     public int getBeanDefinitionCount() {
         return this.beanDefinitionMap.size();
     }
@@ -158,6 +452,10 @@ public class VincentApplicationContext {
         return this.beanDefinitionMap.keySet().toArray(new String[this.beanDefinitionMap.size()]);
     }
 
+    public VincentStartupProfiler getStartupProfiler() {
+        return this.startupProfiler;
+    }
+
     public Properties getConfig() {
         return this.reader.getConfig();
     }
@@ -0,0 +1,132 @@
+package com.vincent.spring.framework.context.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * 编译期生成组件索引的注解处理器
+ * 把标注了 @VincentController / @VincentService 的类写进 META-INF/vincent.components，格式：
+ * 类名=注解名,接口名1,接口名2
+ * 启动时 VincentBeanDefinitionReader 直接读这个文件，不需要扫描目录，也不需要加载类
+ * 增量编译只会处理改动过的类，所以会先合并上一次生成的索引，再去掉已经不存在的类
+ * @author vincent
+ */
+@SupportedAnnotationTypes("*")
+public class VincentComponentIndexer extends AbstractProcessor {
+
+    public static final String COMPONENTS_RESOURCE_LOCATION = "META-INF/vincent.components";
+
+    static final String CONTROLLER = "com.vincent.spring.framework.annotation.VincentController";
+    static final String SERVICE = "com.vincent.spring.framework.annotation.VincentService";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    //类名 -> 注解名,接口名...，TreeMap 保证生成的文件内容稳定
+    private final Map<String, String> components = new TreeMap<String, String>();
+    //本次编译处理过的类，旧索引里这些类的记录以本次结果为准
+    private final Set<String> compiledTypes = new HashSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement) {
+                compiledTypes.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+            }
+        }
+        for (TypeElement annotation : annotations) {
+            String annotationName = annotation.getQualifiedName().toString();
+            if (!CONTROLLER.equals(annotationName) && !SERVICE.equals(annotationName)) {
+                continue;
+            }
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                StringBuilder value = new StringBuilder(annotation.getQualifiedName());
+                for (TypeMirror i : type.getInterfaces()) {
+                    if (i.getKind() == TypeKind.DECLARED) {
+                        value.append(',').append(((TypeElement) ((DeclaredType) i).asElement()).getQualifiedName());
+                    }
+                }
+                components.put(processingEnv.getElementUtils().getBinaryName(type).toString(), value.toString());
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        Map<String, String> previous = readPreviousIndex();
+        Map<String, String> merged = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            //增量编译时保留没有重新编译、但仍然存在的类
+            if (!compiledTypes.contains(entry.getKey())
+                    && processingEnv.getElementUtils().getTypeElement(entry.getKey().replace('$', '.')) != null) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        merged.putAll(components);
+        if (merged.isEmpty() && previous.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", COMPONENTS_RESOURCE_LOCATION);
+            Writer writer = new OutputStreamWriter(file.openOutputStream(), UTF_8);
+            try {
+                for (Map.Entry<String, String> entry : merged.entrySet()) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + COMPONENTS_RESOURCE_LOCATION + " : " + e);
+        }
+    }
+
+    private Map<String, String> readPreviousIndex() {
+        Map<String, String> previous = new LinkedHashMap<String, String>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", COMPONENTS_RESOURCE_LOCATION);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(), UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int index = line.indexOf('=');
+                    if (index > 0) {
+                        previous.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            //第一次编译，还没有索引
+        }
+        return previous;
+    }
+}
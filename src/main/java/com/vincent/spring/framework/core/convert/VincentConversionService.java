@@ -0,0 +1,480 @@
+package com.vincent.spring.framework.core.convert;
+
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型转换服务
+ * 启动时按形参的类型找到转换器（VincentMethodParameter 里保存），请求时只调用转换器，不再判断类型
+ * 内置：String、基本类型及包装类、枚举、BigDecimal、BigInteger、UUID、Date、LocalDate、LocalDateTime，
+ * 以及由它们组成的数组和 List / Set（同名参数的多个值，或者一个逗号分隔的值）
+ * 其他类型依次尝试自定义转换器、静态 valueOf(String)、构造方法(String)，都没有时启动失败
+ * 空白字符串对非 String 类型转换为 null
+ * @author vincent
+ */
+public class VincentConversionService {
+
+    private static volatile VincentConversionService sharedInstance;
+
+    //目标类型（基本类型按包装类） -> 转换器
+    private final Map<Class<?>, VincentConverter<?>> converters = new ConcurrentHashMap<Class<?>, VincentConverter<?>>();
+
+    public VincentConversionService() {
+        addDefaultConverters();
+    }
+
+    /**
+     * 只包含内置转换器的共享实例
+     */
+    public static VincentConversionService getSharedInstance() {
+        VincentConversionService instance = sharedInstance;
+        if (instance == null) {
+            synchronized (VincentConversionService.class) {
+                instance = sharedInstance;
+                if (instance == null) {
+                    instance = new VincentConversionService();
+                    sharedInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    public <T> void addConverter(Class<T> targetType, VincentConverter<? extends T> converter) {
+        converters.put(wrap(targetType), converter);
+    }
+
+    /**
+     * 注册转换器，目标类型从实现类的泛型参数 VincentConverter&lt;T&gt; 上解析
+     */
+    public void addConverter(VincentConverter<?> converter) {
+        Class<?> targetType = resolveTargetType(converter.getClass());
+        if (targetType == null) {
+            throw new IllegalArgumentException("Unable to determine the target type of converter "
+                    + converter.getClass().getName() + ", use addConverter(Class, VincentConverter) instead");
+        }
+        converters.put(wrap(targetType), converter);
+    }
+
+    public boolean canConvert(Type targetType) {
+        try {
+            getConverter(targetType);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 找到目标类型的转换器，只在启动时调用
+     * @throws IllegalArgumentException 不支持的类型
+     */
+    public VincentConverter<?> getConverter(Type targetType) {
+        Class<?> rawType = rawClass(targetType);
+
+        VincentConverter<?> converter = converters.get(wrap(rawType));
+        if (converter != null) {
+            return converter;
+        }
+        if (rawType.isEnum()) {
+            return cache(rawType, new EnumConverter(rawType));
+        }
+        if (rawType.isArray()) {
+            Type componentType = targetType instanceof GenericArrayType
+                    ? ((GenericArrayType) targetType).getGenericComponentType() : rawType.getComponentType();
+            return new ArrayConverter(rawClass(componentType), getConverter(componentType));
+        }
+        if (Collection.class.isAssignableFrom(rawType)) {
+            Type elementType = elementType(targetType);
+            return new CollectionConverter(rawType, getConverter(elementType));
+        }
+        converter = valueOfConverter(rawType);
+        if (converter != null) {
+            return cache(rawType, converter);
+        }
+        throw new IllegalArgumentException("No converter found for type " + targetType.getTypeName());
+    }
+
+    /**
+     * 基本类型在没有值时使用的默认值，其他类型为 null
+     */
+    public static Object emptyValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == char.class) {
+            return Character.valueOf((char) 0);
+        }
+        if (type == long.class) {
+            return Long.valueOf(0L);
+        }
+        if (type == double.class) {
+            return Double.valueOf(0D);
+        }
+        if (type == float.class) {
+            return Float.valueOf(0F);
+        }
+        if (type == short.class) {
+            return Short.valueOf((short) 0);
+        }
+        if (type == byte.class) {
+            return Byte.valueOf((byte) 0);
+        }
+        return Integer.valueOf(0);
+    }
+
+    private void addDefaultConverters() {
+        addConverter(String.class, new VincentConverter<String>() {
+            public String convert(String source) {
+                return source;
+            }
+        });
+        //无法确定类型的泛型参数按字符串处理
+        addConverter(Object.class, new VincentConverter<Object>() {
+            public Object convert(String source) {
+                return source;
+            }
+        });
+        addConverter(Integer.class, new VincentConverter<Integer>() {
+            public Integer convert(String source) {
+                return isBlank(source) ? null : Integer.valueOf(VincentNumberParser.parseInt(source));
+            }
+        });
+        addConverter(Long.class, new VincentConverter<Long>() {
+            public Long convert(String source) {
+                return isBlank(source) ? null : Long.valueOf(VincentNumberParser.parseLong(source));
+            }
+        });
+        addConverter(Short.class, new VincentConverter<Short>() {
+            public Short convert(String source) {
+                return isBlank(source) ? null : Short.valueOf(VincentNumberParser.parseShort(source));
+            }
+        });
+        addConverter(Byte.class, new VincentConverter<Byte>() {
+            public Byte convert(String source) {
+                return isBlank(source) ? null : Byte.valueOf(VincentNumberParser.parseByte(source));
+            }
+        });
+        //parseDouble 自己会忽略首尾空白
+        addConverter(Double.class, new VincentConverter<Double>() {
+            public Double convert(String source) {
+                return isBlank(source) ? null : Double.valueOf(Double.parseDouble(source));
+            }
+        });
+        addConverter(Float.class, new VincentConverter<Float>() {
+            public Float convert(String source) {
+                return isBlank(source) ? null : Float.valueOf(Float.parseFloat(source));
+            }
+        });
+        addConverter(Boolean.class, new VincentConverter<Boolean>() {
+            public Boolean convert(String source) {
+                if (isBlank(source)) {
+                    return null;
+                }
+                String value = source.trim();
+                if ("true".equalsIgnoreCase(value) || "on".equalsIgnoreCase(value)
+                        || "yes".equalsIgnoreCase(value) || "1".equals(value)) {
+                    return Boolean.TRUE;
+                }
+                if ("false".equalsIgnoreCase(value) || "off".equalsIgnoreCase(value)
+                        || "no".equalsIgnoreCase(value) || "0".equals(value)) {
+                    return Boolean.FALSE;
+                }
+                throw new IllegalArgumentException("Invalid boolean value '" + source + "'");
+            }
+        });
+        addConverter(Character.class, new VincentConverter<Character>() {
+            public Character convert(String source) {
+                if (source.isEmpty()) {
+                    return null;
+                }
+                if (source.length() > 1) {
+                    throw new IllegalArgumentException("Can only convert a String of length 1 to Character : '" + source + "'");
+                }
+                return Character.valueOf(source.charAt(0));
+            }
+        });
+        addConverter(BigDecimal.class, new VincentConverter<BigDecimal>() {
+            public BigDecimal convert(String source) {
+                return isBlank(source) ? null : new BigDecimal(source.trim());
+            }
+        });
+        addConverter(BigInteger.class, new VincentConverter<BigInteger>() {
+            public BigInteger convert(String source) {
+                return isBlank(source) ? null : new BigInteger(source.trim());
+            }
+        });
+        addConverter(UUID.class, new VincentConverter<UUID>() {
+            public UUID convert(String source) {
+                return isBlank(source) ? null : UUID.fromString(source.trim());
+            }
+        });
+        addConverter(LocalDate.class, new VincentConverter<LocalDate>() {
+            public LocalDate convert(String source) {
+                return isBlank(source) ? null : LocalDate.parse(source.trim());
+            }
+        });
+        addConverter(LocalDateTime.class, new VincentConverter<LocalDateTime>() {
+            public LocalDateTime convert(String source) {
+                return isBlank(source) ? null : parseDateTime(source.trim());
+            }
+        });
+        //毫秒数、yyyy-MM-dd、yyyy-MM-dd HH:mm:ss、yyyy-MM-ddTHH:mm:ss，按系统时区
+        addConverter(Date.class, new VincentConverter<Date>() {
+            public Date convert(String source) {
+                if (isBlank(source)) {
+                    return null;
+                }
+                String value = source.trim();
+                if (isDigits(value)) {
+                    return new Date(VincentNumberParser.parseLong(value));
+                }
+                LocalDateTime dateTime = value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : parseDateTime(value);
+                return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+            }
+        });
+    }
+
+    private VincentConverter<?> cache(Class<?> type, VincentConverter<?> converter) {
+        VincentConverter<?> existing = converters.putIfAbsent(type, converter);
+        return existing == null ? converter : existing;
+    }
+
+    /**
+     * 静态 valueOf(String) 或者 构造方法(String)
+     */
+    private static VincentConverter<?> valueOfConverter(final Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            final Method valueOf = type.getMethod("valueOf", String.class);
+            if (Modifier.isStatic(valueOf.getModifiers()) && type.isAssignableFrom(valueOf.getReturnType())) {
+                return new VincentConverter<Object>() {
+                    public Object convert(String source) throws Exception {
+                        return isBlank(source) ? null : invoke(valueOf, null, source);
+                    }
+                };
+            }
+        } catch (NoSuchMethodException e) {
+            //继续尝试构造方法
+        }
+        try {
+            final Constructor<?> constructor = type.getConstructor(String.class);
+            return new VincentConverter<Object>() {
+                public Object convert(String source) throws Exception {
+                    if (isBlank(source)) {
+                        return null;
+                    }
+                    try {
+                        return constructor.newInstance(source);
+                    } catch (InvocationTargetException e) {
+                        throw unwrap(e);
+                    }
+                }
+            };
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, String source) throws Exception {
+        try {
+            return method.invoke(target, source);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static Exception unwrap(InvocationTargetException e) {
+        Throwable cause = e.getTargetException();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        throw (Error) cause;
+    }
+
+    private static Class<?> resolveTargetType(Class<?> converterClass) {
+        for (Class<?> clazz = converterClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Type type : clazz.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType
+                        && ((ParameterizedType) type).getRawType() == VincentConverter.class) {
+                    Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+                    return argument instanceof Class || argument instanceof ParameterizedType ? rawClass(argument) : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Type elementType(Type collectionType) {
+        if (!(collectionType instanceof ParameterizedType)) {
+            return String.class;
+        }
+        Type argument = ((ParameterizedType) collectionType).getActualTypeArguments()[0];
+        if (argument instanceof WildcardType) {
+            argument = ((WildcardType) argument).getUpperBounds()[0];
+        }
+        return argument;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return emptyValue(type).getClass();
+    }
+
+    private static boolean isBlank(String source) {
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-')) {
+                return false;
+            }
+        }
+        return value.length() > 0;
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        if (value.length() > 10 && value.charAt(10) == ' ') {
+            value = value.substring(0, 10) + 'T' + value.substring(11);
+        }
+        return LocalDateTime.parse(value);
+    }
+
+    /**
+     * 枚举：启动时建好 name -> 常量 的表
+     */
+    private static class EnumConverter implements VincentConverter<Object> {
+        private final Class<?> enumType;
+        private final Map<String, Object> constants = new HashMap<String, Object>();
+
+        private EnumConverter(Class<?> enumType) {
+            this.enumType = enumType;
+            for (Object constant : enumType.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+
+        public Object convert(String source) {
+            if (isBlank(source)) {
+                return null;
+            }
+            Object constant = constants.get(source);
+            if (constant == null) {
+                constant = constants.get(source.trim());
+            }
+            if (constant == null) {
+                throw new IllegalArgumentException("No enum constant " + enumType.getName() + "." + source);
+            }
+            return constant;
+        }
+    }
+
+    /**
+     * 数组：同名参数的多个值，只有一个值时按逗号拆分
+     */
+    private static class ArrayConverter implements VincentMultiValueConverter<Object> {
+        private final Class<?> componentType;
+        private final VincentConverter<?> elementConverter;
+
+        private ArrayConverter(Class<?> componentType, VincentConverter<?> elementConverter) {
+            this.componentType = componentType;
+            this.elementConverter = elementConverter;
+        }
+
+        public Object convert(String source) throws Exception {
+            return convert(split(source));
+        }
+
+        public Object convert(String[] sources) throws Exception {
+            Object array = Array.newInstance(componentType, sources.length);
+            for (int i = 0; i < sources.length; i++) {
+                Object element = elementConverter.convert(sources[i]);
+                Array.set(array, i, element == null ? emptyValue(componentType) : element);
+            }
+            return array;
+        }
+    }
+
+    /**
+     * List / Set / Collection：同名参数的多个值，只有一个值时按逗号拆分
+     */
+    private static class CollectionConverter implements VincentMultiValueConverter<Collection<Object>> {
+        private final boolean set;
+        private final VincentConverter<?> elementConverter;
+
+        private CollectionConverter(Class<?> collectionType, VincentConverter<?> elementConverter) {
+            this.set = Set.class.isAssignableFrom(collectionType);
+            if (!collectionType.isAssignableFrom(set ? LinkedHashSet.class : ArrayList.class)) {
+                throw new IllegalArgumentException("Unsupported collection type " + collectionType.getName()
+                        + ", use List, Set or Collection");
+            }
+            this.elementConverter = elementConverter;
+        }
+
+        public Collection<Object> convert(String source) throws Exception {
+            return convert(split(source));
+        }
+
+        public Collection<Object> convert(String[] sources) throws Exception {
+            Collection<Object> collection = set ? new LinkedHashSet<Object>(sources.length * 2) : new ArrayList<Object>(sources.length);
+            for (String source : sources) {
+                collection.add(elementConverter.convert(source));
+            }
+            return collection;
+        }
+    }
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private static String[] split(String source) {
+        if (source.isEmpty()) {
+            return NO_VALUES;
+        }
+        int count = 1;
+        for (int i = source.indexOf(','); i >= 0; i = source.indexOf(',', i + 1)) {
+            count++;
+        }
+        String[] parts = new String[count];
+        int from = 0;
+        for (int i = 0; i < count - 1; i++) {
+            int comma = source.indexOf(',', from);
+            parts[i] = source.substring(from, comma);
+            from = comma + 1;
+        }
+        parts[count - 1] = source.substring(from);
+        return parts;
+    }
+}
@@ -0,0 +1,11 @@
+package com.vincent.spring.framework.core.convert;
+
+/**
+ * 把一个请求参数值（字符串）转换成目标类型
+ * 实现类注册到 VincentConversionService，或者作为 Bean 交给容器，由 DispatcherServlet 自动注册
+ * @author vincent
+ */
+public interface VincentConverter<T> {
+
+    T convert(String source) throws Exception;
+}
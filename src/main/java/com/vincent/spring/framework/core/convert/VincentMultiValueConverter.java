@@ -0,0 +1,11 @@
+package com.vincent.spring.framework.core.convert;
+
+/**
+ * 可以直接接收多个参数值的转换器（数组、集合）
+ * 同名参数出现多次时，每个值原样作为一个元素，不再拼接后重新拆分
+ * @author vincent
+ */
+public interface VincentMultiValueConverter<T> extends VincentConverter<T> {
+
+    T convert(String[] sources) throws Exception;
+}
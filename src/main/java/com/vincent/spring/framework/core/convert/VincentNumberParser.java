@@ -0,0 +1,72 @@
+package com.vincent.spring.framework.core.convert;
+
+/**
+ * 直接在原始字符上解析整数，不创建 trim / substring 出来的中间字符串
+ * 允许首尾空白和一个正负号，溢出和非法字符抛 NumberFormatException
+ * @author vincent
+ */
+public final class VincentNumberParser {
+
+    private VincentNumberParser() {
+    }
+
+    public static int parseInt(CharSequence s) {
+        long value = parseLong(s, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        return (int) value;
+    }
+
+    public static long parseLong(CharSequence s) {
+        return parseLong(s, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public static short parseShort(CharSequence s) {
+        return (short) parseLong(s, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    public static byte parseByte(CharSequence s) {
+        return (byte) parseLong(s, Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
+
+    private static long parseLong(CharSequence s, long min, long max) {
+        if (s == null) {
+            throw new NumberFormatException("null");
+        }
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("For input string: \"" + s + "\"");
+        }
+
+        boolean negative = false;
+        char first = s.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+        }
+
+        //和 Long.parseLong 一样按负数累加，这样 MIN_VALUE 也不会溢出
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+}
@@ -0,0 +1,244 @@
+package com.vincent.spring.framework.core.startup;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动耗时统计
+ * 1、阶段：扫描、加载BeanDefinition、创建bean、DispatcherServlet的各个init，记录耗时和期间加载的类的数量
+ * 2、bean：每个bean实例化、注入的耗时，bean是并行创建的，按beanName汇总
+ *    懒加载时注入的耗时包含了依赖的创建
+ * 3、finish() 之后不再记录，生成文本报告和JSON，并检查启动时间预算
+ * 是否打开由配置文件决定，读取配置文件之前只记下了开始时间；
+ * 关闭时 start() 只读一次 volatile 字段，返回共享的空步骤，不取时间、不分配对象
+ * 加载的类的数量是整个JVM的，包括其它线程加载的
+ * @author vincent
+ */
+public class VincentStartupProfiler {
+
+    public static final String INSTANTIATE = "instantiate";
+    public static final String POPULATE = "populate";
+
+    public static final int DEFAULT_TOP_BEANS = 10;
+
+    private final long startNanos = System.nanoTime();
+    private volatile boolean enabled;
+    private ClassLoadingMXBean classLoading;
+    private long startClassCount;
+
+    private final List<Phase> phases = Collections.synchronizedList(new ArrayList<Phase>());
+    private final Map<String, BeanTiming> beans = new ConcurrentHashMap<String, BeanTiming>();
+
+    //以下在 finish() 时确定
+    private boolean finished;
+    private long totalNanos;
+    private long classesLoaded;
+    private long budgetMillis;
+    private List<BeanTiming> slowestBeans = Collections.emptyList();
+    private String json = "{}";
+
+    /**
+     * 打开统计，之后的步骤才会被记录
+     */
+    public void enable() {
+        if (enabled || finished) {
+            return;
+        }
+        classLoading = ManagementFactory.getClassLoadingMXBean();
+        startClassCount = classLoading.getTotalLoadedClassCount();
+        enabled = true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public VincentStartupStep start(String name) {
+        if (!enabled) {
+            return VincentStartupStep.NONE;
+        }
+        return new VincentStartupStep(this, name, null, System.nanoTime(), classLoading.getTotalLoadedClassCount());
+    }
+
+    /**
+     * @param step INSTANTIATE 或 POPULATE
+     */
+    public VincentStartupStep startBean(String beanName, String step) {
+        if (!enabled) {
+            return VincentStartupStep.NONE;
+        }
+        return new VincentStartupStep(this, step, beanName, System.nanoTime(), 0);
+    }
+
+    /**
+     * 把一段初始化代码作为一个阶段记录下来
+     */
+    public void run(String name, Runnable task) {
+        VincentStartupStep step = start(name);
+        try {
+            task.run();
+        } finally {
+            step.end();
+        }
+    }
+
+    void record(VincentStartupStep step, long endNanos) {
+        if (!enabled) {
+            return;
+        }
+        long nanos = endNanos - step.getStartNanos();
+        if (step.getBeanName() == null) {
+            phases.add(new Phase(step.getName(), step.getStartNanos(), nanos,
+                    classLoading.getTotalLoadedClassCount() - step.getStartClassCount()));
+            return;
+        }
+        BeanTiming timing = beans.get(step.getBeanName());
+        if (timing == null) {
+            BeanTiming created = new BeanTiming(step.getBeanName());
+            timing = beans.putIfAbsent(step.getBeanName(), created);
+            if (timing == null) {
+                timing = created;
+            }
+        }
+        (INSTANTIATE.equals(step.getName()) ? timing.instantiateNanos : timing.populateNanos).addAndGet(nanos);
+    }
+
+    /**
+     * 结束统计，之后的步骤（如懒加载的bean）不再记录
+     * @param topBeans 报告里列出最慢的多少个bean
+     * @param budgetMillis 启动时间预算，0表示不检查
+     */
+    public synchronized void finish(int topBeans, long budgetMillis) {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        finished = true;
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.classesLoaded = classLoading.getTotalLoadedClassCount() - startClassCount;
+        this.budgetMillis = budgetMillis;
+
+        synchronized (phases) {
+            phases.sort(Comparator.comparingLong(phase -> phase.startNanos));
+        }
+        List<BeanTiming> sorted = new ArrayList<BeanTiming>(beans.values());
+        sorted.sort(Comparator.comparingLong(BeanTiming::totalNanos).reversed());
+        this.slowestBeans = sorted.subList(0, Math.min(Math.max(0, topBeans), sorted.size()));
+        this.json = buildJson();
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getTotalMillis() {
+        return totalNanos / 1000000;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public boolean isOverBudget() {
+        return budgetMillis > 0 && getTotalMillis() > budgetMillis;
+    }
+
+    public String toJson() {
+        return json;
+    }
+
+    /**
+     * 多行的文本报告，阶段按开始时间排序
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("Startup finished in ").append(millis(totalNanos)).append(" ms, ")
+                .append(classesLoaded).append(" classes loaded, ").append(beans.size()).append(" beans");
+        if (budgetMillis > 0) {
+            sb.append(" (budget ").append(budgetMillis).append(" ms)");
+        }
+        for (Phase phase : phases) {
+            sb.append(String.format(Locale.ROOT, "%n  %-36s %10s ms %8d classes", phase.name, millis(phase.nanos), phase.classesLoaded));
+        }
+        if (!slowestBeans.isEmpty()) {
+            sb.append(String.format("%nSlowest beans :"));
+            for (BeanTiming bean : slowestBeans) {
+                sb.append(String.format(Locale.ROOT, "%n  %-36s %10s ms (instantiate %s ms, populate %s ms)", bean.beanName,
+                        millis(bean.totalNanos()), millis(bean.instantiateNanos.get()), millis(bean.populateNanos.get())));
+            }
+        }
+        return sb.toString();
+    }
+
+    private String buildJson() {
+        StringBuilder json = new StringBuilder(128 * (phases.size() + slowestBeans.size()) + 128);
+        json.append("{\"totalMillis\":").append(millis(totalNanos))
+                .append(",\"classesLoaded\":").append(classesLoaded)
+                .append(",\"beans\":").append(beans.size())
+                .append(",\"budgetMillis\":").append(budgetMillis)
+                .append(",\"overBudget\":").append(isOverBudget())
+                .append(",\"phases\":[");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"").append(escape(phase.name))
+                    .append("\",\"millis\":").append(millis(phase.nanos))
+                    .append(",\"classesLoaded\":").append(phase.classesLoaded)
+                    .append('}');
+        }
+        json.append("],\"slowestBeans\":[");
+        for (int i = 0; i < slowestBeans.size(); i++) {
+            BeanTiming bean = slowestBeans.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"").append(escape(bean.beanName))
+                    .append("\",\"millis\":").append(millis(bean.totalNanos()))
+                    .append(",\"instantiateMillis\":").append(millis(bean.instantiateNanos.get()))
+                    .append(",\"populateMillis\":").append(millis(bean.populateNanos.get()))
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static class Phase {
+        final String name;
+        final long startNanos;
+        final long nanos;
+        final long classesLoaded;
+
+        Phase(String name, long startNanos, long nanos, long classesLoaded) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.nanos = nanos;
+            this.classesLoaded = classesLoaded;
+        }
+    }
+
+    private static class BeanTiming {
+        final String beanName;
+        final AtomicLong instantiateNanos = new AtomicLong();
+        final AtomicLong populateNanos = new AtomicLong();
+
+        BeanTiming(String beanName) {
+            this.beanName = beanName;
+        }
+
+        long totalNanos() {
+            return instantiateNanos.get() + populateNanos.get();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.vincent.spring.framework.core.startup;
+
+/**
+ * 启动过程中的一个步骤，开始时记下时间和已加载的类的数量，end() 时交给 profiler 记录
+ * 关闭统计时 profiler 返回共享的 NONE，end() 什么都不做
+ * @author vincent
+ */
+public class VincentStartupStep {
+
+    static final VincentStartupStep NONE = new VincentStartupStep(null, null, null, 0, 0);
+
+    private final VincentStartupProfiler profiler;
+    private final String name;
+    //bean的步骤（实例化、注入）时是beanName，阶段为null
+    private final String beanName;
+    private final long startNanos;
+    private final long startClassCount;
+
+    VincentStartupStep(VincentStartupProfiler profiler, String name, String beanName, long startNanos, long startClassCount) {
+        this.profiler = profiler;
+        this.name = name;
+        this.beanName = beanName;
+        this.startNanos = startNanos;
+        this.startClassCount = startClassCount;
+    }
+
+    public void end() {
+        if (profiler != null) {
+            profiler.record(this, System.nanoTime());
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getBeanName() {
+        return beanName;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getStartClassCount() {
+        return startClassCount;
+    }
+}
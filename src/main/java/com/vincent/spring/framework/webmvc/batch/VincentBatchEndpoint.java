@@ -0,0 +1,225 @@
+package com.vincent.spring.framework.webmvc.batch;
+
+import com.vincent.spring.framework.webmvc.json.VincentJsonSerializer;
+import com.vincent.spring.framework.webmvc.json.VincentJsonWriter;
+import com.vincent.spring.framework.webmvc.servlet.VincentErrorLogger;
+import com.vincent.spring.framework.webmvc.servlet.VincentRequestBindingException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内置的批量接口，一个HTTP请求里执行多个Handler调用
+ * 1、POST，请求体每行一个子请求：以 / 开头的路径加查询参数，空行和 # 开头的行忽略，如
+ *      /web/query.json?name=vincent
+ *      /web/add.json?a=1&b=2
+ * 2、子请求交给 DispatcherServlet 正常的分发流程（路由、拦截器、并发限制、参数绑定、异常解析），不是另一套分发
+ * 3、子请求在线程池里并行执行，一个批量请求最多同时执行 parallelism 个；
+ *    当前线程也参与执行，线程池满了只是并行度变小，不会卡住；
+ *    所有子请求都执行完才返回，等待时被中断也会先停止领取新的子请求，等正在执行的结束
+ * 4、返回 {"responses":[{"path":...,"status":...,"contentType":...,"body":...}]}，顺序和请求体一致，
+ *    JSON内容直接嵌入，其它内容按字符串输出，没有内容时为null
+ * @author vincent
+ */
+public class VincentBatchEndpoint {
+
+    public static final int DEFAULT_MAX_REQUESTS = 20;
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 执行一个子请求，返回时响应已经完整写进 resp
+     */
+    public interface SubRequestDispatcher {
+        void dispatch(HttpServletRequest req, HttpServletResponse resp);
+    }
+
+    private final String path;
+    private final SubRequestDispatcher dispatcher;
+    private final Executor executor;
+    private final VincentErrorLogger errorLogger;
+    private final int maxRequests;
+    private final int parallelism;
+
+    /**
+     * @param path 批量接口自己的路径，子请求不能再调用它
+     */
+    public VincentBatchEndpoint(String path, SubRequestDispatcher dispatcher, Executor executor, VincentErrorLogger errorLogger,
+                                int maxRequests, int parallelism) {
+        this.path = path;
+        this.dispatcher = dispatcher;
+        this.executor = executor;
+        this.errorLogger = errorLogger;
+        this.maxRequests = maxRequests;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void batch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!"POST".equals(req.getMethod())) {
+            resp.setHeader("Allow", "POST");
+            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        List<String> targets = readTargets(req);
+        VincentBatchResponse[] responses = new VincentBatchResponse[targets.size()];
+        execute(req, resp, targets, responses);
+        writeResponses(targets, responses, resp);
+    }
+
+    private List<String> readTargets(HttpServletRequest req) throws IOException {
+        if (req.getCharacterEncoding() == null) {
+            req.setCharacterEncoding("UTF-8");
+        }
+        List<String> targets = new ArrayList<String>();
+        BufferedReader reader = req.getReader();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (targets.size() == maxRequests) {
+                throw new VincentRequestBindingException("Too many batch sub-requests, the limit is " + maxRequests);
+            }
+            targets.add(line);
+        }
+        return targets;
+    }
+
+    private void execute(final HttpServletRequest req, final HttpServletResponse resp,
+                         final List<String> targets, final VincentBatchResponse[] responses) throws IOException {
+        //子请求并发读取的请求头、Session等在这里一次复制好
+        final VincentBatchRequest.Shared shared = new VincentBatchRequest.Shared(req);
+        final AtomicInteger next = new AtomicInteger();
+        //每个执行者结束时减一，包括当前线程
+        int workers = Math.min(parallelism, targets.size());
+        final CountDownLatch done = new CountDownLatch(workers);
+        Runnable worker = () -> {
+            try {
+                int i;
+                while ((i = next.getAndIncrement()) < targets.size()) {
+                    responses[i] = executeOne(req, shared, resp, targets.get(i));
+                }
+            } finally {
+                done.countDown();
+            }
+        };
+
+        for (int i = 1; i < workers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                //没有提交的执行者直接算结束
+                for (; i < workers; i++) {
+                    done.countDown();
+                }
+                break;
+            }
+        }
+        worker.run();
+
+        //必须等所有执行者结束才返回，子请求还在写 responses、读批量请求
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                //不再领取新的子请求
+                next.set(targets.size());
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for batch sub-requests");
+        }
+    }
+
+    private VincentBatchResponse executeOne(HttpServletRequest req, VincentBatchRequest.Shared shared, HttpServletResponse resp, String target) {
+        VincentBatchResponse subResponse = new VincentBatchResponse(resp);
+        VincentBatchRequest subRequest;
+        try {
+            subRequest = target.startsWith("/") ? new VincentBatchRequest(req, shared, target) : null;
+        } catch (IllegalArgumentException e) {
+            subRequest = null;
+        }
+        //不合法的路径、嵌套调用批量接口
+        if (subRequest == null || path.equals(subRequest.getPath().replaceAll("/+", "/"))) {
+            subResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return subResponse;
+        }
+        try {
+            dispatcher.dispatch(subRequest, subResponse);
+        } catch (RuntimeException e) {
+            //分发流程已经处理了Handler的异常，到这里是分发本身出错
+            errorLogger.log("Batch sub-request failed : " + target, e);
+            subResponse = new VincentBatchResponse(resp);
+            subResponse.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        return subResponse;
+    }
+
+    private void writeResponses(List<String> targets, VincentBatchResponse[] responses, HttpServletResponse resp) throws IOException {
+        resp.setContentType(VincentJsonSerializer.CONTENT_TYPE);
+        VincentJsonWriter json = new VincentJsonWriter(resp);
+        json.writeAscii("{\"responses\":[");
+        for (int i = 0; i < responses.length; i++) {
+            VincentBatchResponse response = responses[i];
+            if (i > 0) {
+                json.writeByte((byte) ',');
+            }
+            json.writeAscii("{\"path\":");
+            json.writeString(targets.get(i));
+            json.writeAscii(",\"status\":");
+            json.writeLong(response.getStatus());
+            json.writeAscii(",\"contentType\":");
+            String contentType = response.getContentType();
+            if (contentType == null) {
+                json.writeNull();
+            } else {
+                json.writeString(contentType);
+            }
+            json.writeAscii(",\"body\":");
+            byte[] content = response.getContent();
+            if (content.length == 0) {
+                json.writeNull();
+            } else if (isJson(contentType)) {
+                json.writeRaw(content);
+            } else {
+                json.writeString(new String(content, charset(response)));
+            }
+            json.writeByte((byte) '}');
+        }
+        json.writeAscii("]}");
+        json.finish();
+    }
+
+    private static boolean isJson(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("application/json") || type.contains("+json");
+    }
+
+    private static Charset charset(VincentBatchResponse response) {
+        try {
+            return Charset.forName(response.getCharacterEncoding());
+        } catch (IllegalArgumentException e) {
+            return UTF_8;
+        }
+    }
+}
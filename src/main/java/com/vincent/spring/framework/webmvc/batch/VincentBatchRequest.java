@@ -0,0 +1,331 @@
+package com.vincent.spring.framework.webmvc.batch;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量请求里的一个子请求
+ * 路径、参数来自批量请求体里的一行（如 /web/query.json?name=vincent），请求头、Cookie、Session沿用批量请求
+ * 子请求是没有请求体的 GET，有自己的 attribute，不支持异步
+ * 子请求在多个线程里并发执行，请求头、Cookie、Session、Locale在分发前从批量请求复制一份（{@link Shared}），
+ * 执行时不再访问不是线程安全的批量请求
+ * @author vincent
+ */
+public class VincentBatchRequest extends HttpServletRequestWrapper {
+
+    private final String path;
+    private final String queryString;
+    private final Map<String, String[]> parameters;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+    private final Shared shared;
+
+    /**
+     * @param shared 同一个批量请求的所有子请求共用
+     * @param target 以 / 开头的路径，可以带查询参数
+     */
+    public VincentBatchRequest(HttpServletRequest request, Shared shared, String target) {
+        super(request);
+        this.shared = shared;
+        int question = target.indexOf('?');
+        this.path = question < 0 ? target : target.substring(0, question);
+        this.queryString = question < 0 ? null : target.substring(question + 1);
+        this.parameters = Collections.unmodifiableMap(parseQueryString(queryString));
+    }
+
+    static Map<String, String[]> parseQueryString(String queryString) {
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+        if (queryString == null || queryString.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : queryString.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = decode(eq < 0 ? pair : pair.substring(0, eq));
+            String value = eq < 0 ? "" : decode(pair.substring(eq + 1));
+            String[] values = parameters.get(name);
+            if (values == null) {
+                values = new String[]{value};
+            } else {
+                values = Arrays.copyOf(values, values.length + 1);
+                values[values.length - 1] = value;
+            }
+            parameters.put(name, values);
+        }
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed query string : " + value);
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String getMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getRequestURI() {
+        String contextPath = getContextPath();
+        return contextPath == null ? path : contextPath + path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer();
+        url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(getRequestURI());
+        return url;
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getPathInfo() {
+        return path;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        String[] values = parameters.get(name);
+        return values == null ? null : values.clone();
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return parameters;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = shared.headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = shared.headers.get(name);
+        return Collections.enumeration(values == null ? Collections.<String>emptyList() : values);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(shared.headers.keySet());
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cannot parse date header " + name + " : " + value);
+        }
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+        return shared.cookies == null ? null : shared.cookies.clone();
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        return shared.getSession(create);
+    }
+
+    @Override
+    public Locale getLocale() {
+        return shared.locales.get(0);
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(shared.locales);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public int getContentLength() {
+        return 0;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return 0;
+    }
+
+    @Override
+    public String getContentType() {
+        return null;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return true;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new IllegalStateException("Batch sub-requests do not support non-blocking IO");
+            }
+
+            @Override
+            public int read() {
+                return -1;
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new StringReader(""));
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Batch sub-requests do not support async");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("Batch sub-requests do not support async");
+    }
+
+    /**
+     * 批量请求的请求头、Cookie、Session、Locale，分发子请求前在批量请求的线程里复制
+     */
+    public static class Shared {
+
+        private final HttpServletRequest request;
+        private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        private final Cookie[] cookies;
+        private final List<Locale> locales;
+        private HttpSession session;
+
+        public Shared(HttpServletRequest request) {
+            this.request = request;
+            Enumeration<String> names = request.getHeaderNames();
+            while (names != null && names.hasMoreElements()) {
+                String name = names.nextElement();
+                Enumeration<String> values = request.getHeaders(name);
+                if (values != null && values.hasMoreElements()) {
+                    headers.put(name, Collections.unmodifiableList(Collections.list(values)));
+                }
+            }
+            this.cookies = request.getCookies();
+            Enumeration<Locale> requestLocales = request.getLocales();
+            List<Locale> locales = requestLocales == null ? new ArrayList<Locale>() : Collections.list(requestLocales);
+            if (locales.isEmpty()) {
+                locales.add(Locale.getDefault());
+            }
+            this.locales = Collections.unmodifiableList(locales);
+            this.session = request.getSession(false);
+        }
+
+        //子请求第一次创建Session时才访问批量请求，加锁保证同一时间只有一个线程访问
+        private synchronized HttpSession getSession(boolean create) {
+            if (session == null && create) {
+                session = request.getSession(true);
+            }
+            return session;
+        }
+    }
+}
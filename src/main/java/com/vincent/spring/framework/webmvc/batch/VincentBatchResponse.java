@@ -0,0 +1,319 @@
+package com.vincent.spring.framework.webmvc.batch;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * 子请求的 response，状态码、响应头、内容都记录在内存里，不会写到批量请求的 response
+ * 子请求设置的Cookie、Locale被忽略
+ * @author vincent
+ */
+public class VincentBatchResponse extends HttpServletResponseWrapper {
+
+    private static final String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+
+    private int status = SC_OK;
+    private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    private String contentType;
+    private String characterEncoding;
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream(256);
+    private boolean committed;
+    //sendError / sendRedirect 之后的输出被丢弃
+    private boolean closed;
+
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public VincentBatchResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    /**
+     * @return 子请求输出的内容
+     */
+    public byte[] getContent() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return content.toByteArray();
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        if (!committed) {
+            this.status = sc;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        setStatus(sc);
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        checkNotCommitted();
+        this.status = sc;
+        content.reset();
+        committed = true;
+        closed = true;
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        checkNotCommitted();
+        this.status = SC_FOUND;
+        setHeader("Location", location);
+        content.reset();
+        committed = true;
+        closed = true;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (committed) {
+            return;
+        }
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            setContentType(value);
+            return;
+        }
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        headers.put(name, values);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (committed) {
+            return;
+        }
+        List<String> values = headers.get(name);
+        if (values == null) {
+            setHeader(name, value);
+        } else {
+            values.add(value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, formatDate(date));
+    }
+
+    private static String formatDate(long date) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atOffset(ZoneOffset.UTC));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name) || ("Content-Type".equalsIgnoreCase(name) && contentType != null);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            return getContentType();
+        }
+        List<String> values = headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? Collections.<String>emptyList() : new ArrayList<String>(values);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return new ArrayList<String>(headers.keySet());
+    }
+
+    @Override
+    public void setContentType(String type) {
+        if (committed) {
+            return;
+        }
+        if (type == null) {
+            this.contentType = null;
+            return;
+        }
+        int index = type.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index >= 0) {
+            this.characterEncoding = type.substring(index + "charset=".length()).trim();
+        }
+        this.contentType = type;
+    }
+
+    @Override
+    public String getContentType() {
+        if (contentType == null || characterEncoding == null || contentType.toLowerCase(Locale.ROOT).contains("charset=")) {
+            return contentType;
+        }
+        return contentType + ";charset=" + characterEncoding;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        if (!committed && writer == null) {
+            this.characterEncoding = charset;
+        }
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding == null ? DEFAULT_CHARACTER_ENCODING : characterEncoding;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        //内容长度以实际输出为准
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        if (outputStream == null) {
+            outputStream = new BufferingOutputStream();
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            outputStream = new BufferingOutputStream();
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+        committed = true;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public void reset() {
+        checkNotCommitted();
+        status = SC_OK;
+        headers.clear();
+        contentType = null;
+        characterEncoding = null;
+        resetBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        checkNotCommitted();
+        if (writer != null) {
+            writer.flush();
+        }
+        content.reset();
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+    }
+
+    @Override
+    public int getBufferSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    private void checkNotCommitted() {
+        if (committed) {
+            throw new IllegalStateException("Response has already been committed");
+        }
+    }
+
+    private class BufferingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) {
+            if (!closed) {
+                content.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (!closed) {
+                content.write(b, off, len);
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new IllegalStateException("Batch sub-responses do not support non-blocking IO");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.vincent.spring.framework.webmvc.cache;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 缓存里的一个响应：内容类型、编码和输出的字节
+ * @author vincent
+ */
+public class VincentCachedResponse {
+
+    private final String contentType;
+    private final String characterEncoding;
+    private final byte[] body;
+
+    public VincentCachedResponse(String contentType, String characterEncoding, byte[] body) {
+        this.contentType = contentType;
+        this.characterEncoding = characterEncoding;
+        this.body = body;
+    }
+
+    /**
+     * 把缓存的内容原样输出
+     */
+    public void writeTo(HttpServletResponse response) throws IOException {
+        if (characterEncoding != null) {
+            response.setCharacterEncoding(characterEncoding);
+        }
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,152 @@
+package com.vincent.spring.framework.webmvc.cache;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * 记录Handler输出的 response 包装，输出照常写给被包装的 response，同时复制一份用来放进缓存
+ * 超过 maxBytes、状态不是200、调用了 sendError / sendRedirect 时不缓存
+ * @author vincent
+ */
+public class VincentCachingResponse extends HttpServletResponseWrapper {
+
+    private final long maxBytes;
+    private ByteArrayOutputStream content = new ByteArrayOutputStream(256);
+    private boolean cacheable = true;
+
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public VincentCachingResponse(HttpServletResponse response, long maxBytes) {
+        super(response);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return 可以缓存的响应，不能缓存时返回null
+     */
+    public VincentCachedResponse toCachedResponse() {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (!cacheable || getStatus() != SC_OK) {
+            return null;
+        }
+        return new VincentCachedResponse(getContentType(), getCharacterEncoding(), content.toByteArray());
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        if (outputStream == null) {
+            outputStream = new CopyingOutputStream(getResponse().getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            outputStream = new CopyingOutputStream(getResponse().getOutputStream());
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        notCacheable();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        notCacheable();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        notCacheable();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (content != null) {
+            content.reset();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if (content != null) {
+            content.reset();
+        }
+    }
+
+    private void notCacheable() {
+        cacheable = false;
+        content = null;
+    }
+
+    private void copy(byte[] b, int off, int len) {
+        if (!cacheable) {
+            return;
+        }
+        if (content.size() + len > maxBytes) {
+            notCacheable();
+            return;
+        }
+        content.write(b, off, len);
+    }
+
+    private class CopyingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream target;
+
+        private CopyingOutputStream(ServletOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            copy(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            copy(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            target.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.vincent.spring.framework.webmvc.cache;
+
+/**
+ * 估算访问频率的 Count-Min Sketch（4行，每个计数器最大15）
+ * 计数的总次数达到 sampleSize 时所有计数减半，让旧的热点逐渐冷却
+ * 计数没有加锁，并发时偶尔丢一次计数不影响准入判断
+ * @author vincent
+ */
+class VincentFrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0x0aa1d2f7, 0x5b1e6d3d, 0x2c9e8f15};
+
+    private final int[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    VincentFrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(64, expectedEntries - 1)) << 1;
+        this.table = new int[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int[] row = table[i];
+            int index = indexOf(hash, i);
+            if (row[index] < MAX_COUNT) {
+                row[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int[] row : table) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] >>>= 1;
+            }
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+}
@@ -0,0 +1,321 @@
+package com.vincent.spring.framework.webmvc.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按字节数限制大小的响应缓存，淘汰策略为 W-TinyLFU：
+ * 1、新条目先进入占 1% 容量的窗口（LRU），吸收突发的新访问
+ * 2、窗口满了以后，被挤出的候选条目和主区（SLRU：试用区 + 保护区）的淘汰对象比较访问频率，频率高的留下，
+ *    一次性的扫描请求因此进不了主区，不会把真正的热点冲掉
+ * 3、主区里再次命中的条目从试用区升级到保护区（占主区 80%）
+ * 读是无锁的 ConcurrentHashMap 查找；调整 LRU 顺序需要拿到锁，拿不到时跳过（只丢失一次顺序调整）
+ * @author vincent
+ */
+public class VincentResponseCache {
+
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final long DEFAULT_MAX_ENTRY_BYTES = 1024L * 1024;
+
+    //每个条目除了内容以外的大致开销
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long maxWindowBytes;
+    private final long maxProtectedBytes;
+
+    private final Map<String, Node> data = new ConcurrentHashMap<String, Node>();
+    private final VincentFrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    //三个队列，head 是最久没有访问的
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protectedQueue = new Queue();
+    private long weightedSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public VincentResponseCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.maxWindowBytes = Math.max(maxBytes / 100, Math.min(maxEntryBytes, maxBytes / 2));
+        this.maxProtectedBytes = (maxBytes - maxWindowBytes) * 8 / 10;
+        //按平均1KB一个条目估算
+        this.sketch = new VincentFrequencySketch((int) Math.min(1 << 20, Math.max(64, maxBytes / 1024)));
+    }
+
+    public VincentCachedResponse get(String key) {
+        int hash = spread(key.hashCode());
+        sketch.increment(hash);
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.expiresAt - System.nanoTime() <= 0) {
+            misses.increment();
+            lock.lock();
+            try {
+                if (data.get(key) == node) {
+                    remove(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * @param ttlNanos 存活时间，单位纳秒
+     * @return false 表示条目太大，没有放进缓存
+     */
+    public boolean put(String key, VincentCachedResponse value, long ttlNanos) {
+        long weight = (long) value.getBody().length + key.length() * 2L + ENTRY_OVERHEAD;
+        if (weight > maxEntryBytes) {
+            rejections.increment();
+            return false;
+        }
+        Node node = new Node(key, value, weight, spread(key.hashCode()), System.nanoTime() + ttlNanos);
+        lock.lock();
+        try {
+            Node old = data.put(key, node);
+            if (old != null) {
+                unlink(old);
+            }
+            window.addLast(node);
+            node.queue = WINDOW;
+            weightedSize += weight;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            weightedSize = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onAccess(Node node) {
+        if (node.removed) {
+            return;
+        }
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                //再次命中，升级到保护区
+                probation.remove(node);
+                protectedQueue.addLast(node);
+                node.queue = PROTECTED;
+                demoteProtected();
+                break;
+            default:
+                protectedQueue.moveToLast(node);
+                break;
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedQueue.weight > maxProtectedBytes) {
+            Node node = protectedQueue.head;
+            protectedQueue.remove(node);
+            probation.addLast(node);
+            node.queue = PROBATION;
+        }
+    }
+
+    private void evict() {
+        //窗口满了：候选条目进入试用区，由下面的准入比较决定去留
+        while (window.weight > maxWindowBytes) {
+            Node candidate = window.head;
+            window.remove(candidate);
+            probation.addLast(candidate);
+            candidate.queue = PROBATION;
+        }
+        while (weightedSize > maxBytes) {
+            Node victim = probation.head != null ? probation.head : protectedQueue.head;
+            Node candidate = probation.tail;
+            if (victim == null) {
+                victim = window.head;
+            }
+            if (candidate != null && candidate != victim && candidate.queue == PROBATION
+                    && sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+                //候选条目不比淘汰对象更热，拒绝候选条目
+                remove(candidate);
+            } else {
+                remove(victim);
+            }
+            evictions.increment();
+        }
+    }
+
+    private void remove(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+    }
+
+    private void unlink(Node node) {
+        if (node.removed) {
+            return;
+        }
+        node.removed = true;
+        queueOf(node).remove(node);
+        weightedSize -= node.weight;
+    }
+
+    private Queue queueOf(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedQueue;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    public int getSize() {
+        return data.size();
+    }
+
+    public long getWeightedSize() {
+        lock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    private static class Node {
+        private final String key;
+        private final VincentCachedResponse value;
+        private final long weight;
+        private final int hash;
+        private final long expiresAt;
+
+        private int queue;
+        private boolean removed;
+        private Node prev;
+        private Node next;
+
+        private Node(String key, VincentCachedResponse value, long weight, int hash, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.hash = hash;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 双向链表实现的 LRU 队列，只在持有锁时修改
+     */
+    private static class Queue {
+        private Node head;
+        private Node tail;
+        private long weight;
+
+        private void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        private void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        private void moveToLast(Node node) {
+            if (tail == node) {
+                return;
+            }
+            remove(node);
+            addLast(node);
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+}
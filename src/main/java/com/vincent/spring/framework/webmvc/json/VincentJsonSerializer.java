@@ -0,0 +1,406 @@
+package com.vincent.spring.framework.webmvc.json;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalAmount;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把Handler的返回值（POJO、Map、集合、数组、字符串、数字等）转换成JSON，边转换边输出
+ * 每个类第一次出现时生成对应的 ValueWriter 并缓存，之后不再做类型判断和反射：
+ * Bean 的属性（public getter，以及没有getter的public字段）在这时解析好，
+ * 属性名预先编码成 "name": 的字节，getter/字段转成 MethodHandle
+ * 属性顺序按字段的声明顺序（父类在前），没有对应字段的getter按名字排在最后
+ * @author vincent
+ */
+public class VincentJsonSerializer {
+
+    public static final String CONTENT_TYPE = "application/json;charset=utf-8";
+
+    //嵌套层数上限，超过时一般是循环引用
+    private static final int MAX_DEPTH = 64;
+
+    private static final VincentJsonSerializer SHARED_INSTANCE = new VincentJsonSerializer();
+
+    //按 toString() 输出成字符串的类型
+    private static final Class<?>[] STRING_TYPES = {
+            UUID.class, TemporalAccessor.class, TemporalAmount.class, ZoneId.class,
+            Locale.class, Charset.class, URI.class, URL.class, File.class, Path.class
+    };
+
+    private final Map<Class<?>, ValueWriter> writers = new ConcurrentHashMap<Class<?>, ValueWriter>();
+
+    public static VincentJsonSerializer getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * 输出到 response，Handler没有设置 Content-Type 时使用 application/json
+     */
+    public void write(Object value, HttpServletResponse resp) throws IOException {
+        if (resp.getContentType() == null) {
+            resp.setContentType(CONTENT_TYPE);
+        }
+        VincentJsonWriter out = new VincentJsonWriter(resp);
+        write(value, out, 0);
+        out.finish();
+    }
+
+    public void write(Object value, VincentJsonWriter out) throws IOException {
+        write(value, out, 0);
+    }
+
+    private void write(Object value, VincentJsonWriter out, int depth) throws IOException {
+        if (value == null) {
+            out.writeNull();
+            return;
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting exceeds " + MAX_DEPTH + " levels, possibly a circular reference : "
+                    + value.getClass().getName());
+        }
+        getWriter(value.getClass()).write(value, out, depth);
+    }
+
+    private ValueWriter getWriter(Class<?> type) {
+        ValueWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = createWriter(type);
+            writers.put(type, writer);
+        }
+        return writer;
+    }
+
+    private ValueWriter createWriter(Class<?> type) {
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return STRING_WRITER;
+        }
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+            return INTEGER_WRITER;
+        }
+        if (type == Boolean.class) {
+            return BOOLEAN_WRITER;
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            return NUMBER_WRITER;
+        }
+        if (type == Character.class) {
+            return TO_STRING_WRITER;
+        }
+        if (Enum.class.isAssignableFrom(type)) {
+            return new EnumWriter(type.isEnum() ? type : type.getSuperclass());
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return mapWriter;
+        }
+        for (Class<?> stringType : STRING_TYPES) {
+            if (stringType.isAssignableFrom(type)) {
+                return TO_STRING_WRITER;
+            }
+        }
+        if (Iterable.class.isAssignableFrom(type)) {
+            return iterableWriter;
+        }
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() ? primitiveArrayWriter(type.getComponentType()) : objectArrayWriter;
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            return DATE_WRITER;
+        }
+        if (Calendar.class.isAssignableFrom(type)) {
+            return CALENDAR_WRITER;
+        }
+        if (type == Optional.class) {
+            return optionalWriter;
+        }
+        return new BeanWriter(type);
+    }
+
+    private interface ValueWriter {
+        void write(Object value, VincentJsonWriter out, int depth) throws IOException;
+    }
+
+    private static final ValueWriter STRING_WRITER = (value, out, depth) -> out.writeString((CharSequence) value);
+
+    private static final ValueWriter TO_STRING_WRITER = (value, out, depth) -> out.writeString(value.toString());
+
+    private static final ValueWriter INTEGER_WRITER = (value, out, depth) -> out.writeLong(((Number) value).longValue());
+
+    private static final ValueWriter BOOLEAN_WRITER = (value, out, depth) -> out.writeBoolean((Boolean) value);
+
+    //Date、Calendar 输出为毫秒数
+    private static final ValueWriter DATE_WRITER = (value, out, depth) -> out.writeLong(((Date) value).getTime());
+
+    private static final ValueWriter CALENDAR_WRITER = (value, out, depth) -> out.writeLong(((Calendar) value).getTimeInMillis());
+
+    private static final ValueWriter NUMBER_WRITER = (value, out, depth) -> {
+        if (value instanceof Double) {
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            out.writeAscii(value.toString());
+        } else if (value instanceof AtomicInteger || value instanceof AtomicLong || value instanceof LongAdder) {
+            out.writeLong(((Number) value).longValue());
+        } else {
+            out.writeDouble(((Number) value).doubleValue());
+        }
+    };
+
+    private final ValueWriter mapWriter = (value, out, depth) -> {
+        out.writeByte((byte) '{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!first) {
+                out.writeByte((byte) ',');
+            }
+            first = false;
+            Object key = entry.getKey();
+            out.writeString(key instanceof CharSequence ? (CharSequence) key : String.valueOf(key));
+            out.writeByte((byte) ':');
+            write(entry.getValue(), out, depth + 1);
+        }
+        out.writeByte((byte) '}');
+    };
+
+    private final ValueWriter iterableWriter = (value, out, depth) -> {
+        out.writeByte((byte) '[');
+        boolean first = true;
+        for (Object element : (Iterable<?>) value) {
+            if (!first) {
+                out.writeByte((byte) ',');
+            }
+            first = false;
+            write(element, out, depth + 1);
+        }
+        out.writeByte((byte) ']');
+    };
+
+    private final ValueWriter objectArrayWriter = (value, out, depth) -> {
+        Object[] array = (Object[]) value;
+        out.writeByte((byte) '[');
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                out.writeByte((byte) ',');
+            }
+            write(array[i], out, depth + 1);
+        }
+        out.writeByte((byte) ']');
+    };
+
+    private final ValueWriter optionalWriter = (value, out, depth) -> write(((Optional<?>) value).orElse(null), out, depth);
+
+    private ValueWriter primitiveArrayWriter(Class<?> componentType) {
+        if (componentType == int.class) {
+            return (value, out, depth) -> {
+                int[] array = (int[]) value;
+                out.writeByte((byte) '[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.writeByte((byte) ',');
+                    }
+                    out.writeLong(array[i]);
+                }
+                out.writeByte((byte) ']');
+            };
+        }
+        if (componentType == long.class) {
+            return (value, out, depth) -> {
+                long[] array = (long[]) value;
+                out.writeByte((byte) '[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.writeByte((byte) ',');
+                    }
+                    out.writeLong(array[i]);
+                }
+                out.writeByte((byte) ']');
+            };
+        }
+        if (componentType == char.class) {
+            return (value, out, depth) -> out.writeString(new String((char[]) value));
+        }
+        //其它基本类型数组不常见，逐个装箱
+        return (value, out, depth) -> {
+            int length = Array.getLength(value);
+            out.writeByte((byte) '[');
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    out.writeByte((byte) ',');
+                }
+                write(Array.get(value, i), out, depth + 1);
+            }
+            out.writeByte((byte) ']');
+        };
+    }
+
+    /**
+     * 枚举输出为name，每个常量的输出启动时编码好
+     */
+    private static class EnumWriter implements ValueWriter {
+        private final byte[][] names;
+
+        private EnumWriter(Class<?> enumType) {
+            Object[] constants = enumType.getEnumConstants();
+            this.names = new byte[constants.length][];
+            for (int i = 0; i < constants.length; i++) {
+                names[i] = quote(((Enum<?>) constants[i]).name());
+            }
+        }
+
+        @Override
+        public void write(Object value, VincentJsonWriter out, int depth) throws IOException {
+            out.writeRaw(names[((Enum<?>) value).ordinal()]);
+        }
+    }
+
+    private class BeanWriter implements ValueWriter {
+        private final BeanProperty[] properties;
+
+        private BeanWriter(Class<?> type) {
+            this.properties = resolveProperties(type);
+        }
+
+        @Override
+        public void write(Object value, VincentJsonWriter out, int depth) throws IOException {
+            out.writeByte((byte) '{');
+            for (int i = 0; i < properties.length; i++) {
+                BeanProperty property = properties[i];
+                out.writeRaw(i == 0 ? property.name : property.separatedName);
+                VincentJsonSerializer.this.write(property.get(value), out, depth + 1);
+            }
+            out.writeByte((byte) '}');
+        }
+    }
+
+    private static class BeanProperty {
+        //"name":
+        private final byte[] name;
+        //,"name":
+        private final byte[] separatedName;
+        //(Object)Object
+        private final MethodHandle getter;
+
+        private BeanProperty(String name, MethodHandle getter) {
+            byte[] quoted = quote(name);
+            this.name = Arrays.copyOf(quoted, quoted.length + 1);
+            this.name[quoted.length] = ':';
+            this.separatedName = new byte[this.name.length + 1];
+            this.separatedName[0] = ',';
+            System.arraycopy(this.name, 0, this.separatedName, 1, this.name.length);
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        }
+
+        private Object get(Object bean) {
+            try {
+                return (Object) getter.invokeExact(bean);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static BeanProperty[] resolveProperties(Class<?> type) {
+        //属性名 -> getter 或者 public字段
+        Map<String, MethodHandle> accessors = new HashMap<String, MethodHandle>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            for (Field field : type.getFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                accessors.put(field.getName(), lookup.unreflectGetter(field));
+            }
+            //getter 优先于同名的public字段
+            for (Method method : type.getMethods()) {
+                String name = propertyName(method);
+                if (name == null) {
+                    continue;
+                }
+                method.setAccessible(true);
+                accessors.put(name, lookup.unreflect(method));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access properties of " + type.getName(), e);
+        }
+
+        //按字段声明顺序排列
+        List<String> names = new ArrayList<String>(accessors.size());
+        LinkedList<Class<?>> hierarchy = new LinkedList<Class<?>>();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            hierarchy.addFirst(clazz);
+        }
+        for (Class<?> clazz : hierarchy) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (accessors.containsKey(field.getName()) && !names.contains(field.getName())) {
+                    names.add(field.getName());
+                }
+            }
+        }
+        List<String> remaining = new ArrayList<String>(accessors.keySet());
+        remaining.removeAll(names);
+        Collections.sort(remaining);
+        names.addAll(remaining);
+
+        BeanProperty[] properties = new BeanProperty[names.size()];
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = new BeanProperty(names.get(i), accessors.get(names.get(i)));
+        }
+        return properties;
+    }
+
+    //getXxx() / isXxx() 对应的属性名，不是getter时返回null
+    private static String propertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 0
+                || method.getReturnType() == void.class || method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    //和 java.beans.Introspector.decapitalize 一样，URL 这类连续大写的保持不变
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    //属性名、枚举名都是Java标识符，不需要转义
+    private static byte[] quote(String name) {
+        return ("\"" + name + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+}
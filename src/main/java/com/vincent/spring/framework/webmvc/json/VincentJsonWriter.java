@@ -0,0 +1,234 @@
+package com.vincent.spring.framework.webmvc.json;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 流式的JSON输出
+ * 直接按 UTF-8 编码成字节写进一个固定大小的缓冲，缓冲满了就写到 response 的输出流，不会在内存里拼出整个JSON
+ * 整个JSON没有超过缓冲大小时，结束时设置准确的 Content-Length
+ * 缓冲从一个有上限的池里取，finish() 之后归还；没有 finish()（输出出错）的缓冲直接丢弃
+ * @author vincent
+ */
+public class VincentJsonWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final BlockingQueue<byte[]> BUFFERS =
+            new ArrayBlockingQueue<byte[]>(Runtime.getRuntime().availableProcessors() * 4);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+    private static final byte[] TRUE = "true".getBytes();
+    private static final byte[] FALSE = "false".getBytes();
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes();
+
+    private final HttpServletResponse response;
+    private byte[] buf;
+    private int count;
+    private OutputStream out;
+
+    public VincentJsonWriter(HttpServletResponse response) {
+        this.response = response;
+        byte[] buffer = BUFFERS.poll();
+        this.buf = buffer == null ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    public void writeNull() throws IOException {
+        writeRaw(NULL);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeRaw(value ? TRUE : FALSE);
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(MIN_LONG);
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        //从后往前写数字
+        int end = count + digits(value);
+        int pos = end;
+        do {
+            buf[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count = end;
+    }
+
+    /**
+     * 非有限的数字（NaN、Infinity）在JSON里没有表示，输出null
+     */
+    public void writeDouble(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeNull();
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    public void writeFloat(float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            writeNull();
+        } else {
+            writeAscii(Float.toString(value));
+        }
+    }
+
+    /**
+     * 输出不需要转义的ASCII内容，如数字
+     */
+    public void writeAscii(String s) throws IOException {
+        int length = s.length();
+        if (length > buf.length) {
+            for (int i = 0; i < length; i++) {
+                writeByte((byte) s.charAt(i));
+            }
+            return;
+        }
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buf[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    public void writeByte(byte b) throws IOException {
+        if (count == buf.length) {
+            flushBuffer();
+        }
+        buf[count++] = b;
+    }
+
+    /**
+     * 输出预先编码好的内容，如属性名
+     */
+    public void writeRaw(byte[] bytes) throws IOException {
+        if (bytes.length > buf.length - count) {
+            flushBuffer();
+            if (bytes.length > buf.length) {
+                outputStream().write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * 输出带引号的字符串
+     * 除了JSON要求的转义，< > & ' 和 U+2028、U+2029 也转义成 \\uXXXX，JSON嵌进HTML、JS里也是安全的
+     */
+    public void writeString(CharSequence s) throws IOException {
+        writeByte((byte) '"');
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\' && c != '<' && c != '>' && c != '&' && c != '\'') {
+                    if (count == buf.length) {
+                        flushBuffer();
+                    }
+                    buf[count++] = (byte) c;
+                    continue;
+                }
+                writeEscaped(c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c == '\u2028' || c == '\u2029') {
+                writeUnicodeEscape(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                //不成对的代理字符
+                writeUnicodeEscape('\ufffd');
+            } else {
+                ensure(3);
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        writeByte((byte) '"');
+    }
+
+    /**
+     * 写完剩下的内容，还没有输出过任何内容时设置 Content-Length；之后不能再写
+     */
+    public void finish() throws IOException {
+        if (out == null) {
+            response.setContentLength(count);
+        }
+        flushBuffer();
+        BUFFERS.offer(buf);
+        buf = null;
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        ensure(2);
+        switch (c) {
+            case '"': buf[count++] = '\\'; buf[count++] = '"'; return;
+            case '\\': buf[count++] = '\\'; buf[count++] = '\\'; return;
+            case '\n': buf[count++] = '\\'; buf[count++] = 'n'; return;
+            case '\r': buf[count++] = '\\'; buf[count++] = 'r'; return;
+            case '\t': buf[count++] = '\\'; buf[count++] = 't'; return;
+            case '\b': buf[count++] = '\\'; buf[count++] = 'b'; return;
+            case '\f': buf[count++] = '\\'; buf[count++] = 'f'; return;
+            default: writeUnicodeEscape(c);
+        }
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        ensure(6);
+        buf[count++] = '\\';
+        buf[count++] = 'u';
+        buf[count++] = HEX[(c >> 12) & 0xF];
+        buf[count++] = HEX[(c >> 8) & 0xF];
+        buf[count++] = HEX[(c >> 4) & 0xF];
+        buf[count++] = HEX[c & 0xF];
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void ensure(int size) throws IOException {
+        if (size > buf.length - count) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            outputStream().write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private OutputStream outputStream() throws IOException {
+        if (out == null) {
+            out = response.getOutputStream();
+        }
+        return out;
+    }
+}
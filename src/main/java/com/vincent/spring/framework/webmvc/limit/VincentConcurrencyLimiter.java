@@ -0,0 +1,178 @@
+package com.vincent.spring.framework.webmvc.limit;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 一个路由的并发限制
+ * 1、许可就是一个 AtomicInteger 计数，获取、释放都是CAS，没有锁
+ * 2、达到限制时最多 maxQueue 个请求可以等待 queueTimeout，释放许可时唤醒一个等待的线程，等不到就拒绝
+ * 3、自适应模式（AIMD）：以延迟的慢速移动平均作为基线，
+ *    请求延迟超过基线的 TOLERANCE 倍时，限制乘以 BACKOFF_RATIO（一个基线时间内最多减一次）；
+ *    延迟正常并且限制用到一半以上时，每 limit 个请求加 1，最多到 maxLimit
+ *    自适应的状态允许并发更新时有少量误差，不加锁
+ * @author vincent
+ */
+public class VincentConcurrencyLimiter {
+
+    private static final double TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.9;
+    //基线移动平均的权重为 1/64
+    private static final int BASELINE_SHIFT = 6;
+
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+    private final boolean adaptive;
+    private final int retryAfter;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+    private volatile long baselineNanos;
+    private volatile long lastBackoffNanos;
+    private final AtomicInteger increaseCredits = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+
+    public VincentConcurrencyLimiter(int maxLimit, int maxQueue, long queueTimeoutMillis, boolean adaptive, int retryAfter) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException("Concurrency limit must be positive : " + maxLimit);
+        }
+        this.maxLimit = maxLimit;
+        this.maxQueue = Math.max(0, maxQueue);
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.adaptive = adaptive;
+        this.retryAfter = retryAfter;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * @return false 表示已经达到限制（排队也超时了），请求应当被拒绝
+     */
+    public boolean acquire() {
+        if (tryAcquire()) {
+            return true;
+        }
+        if (maxQueue > 0 && await()) {
+            waited.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 释放 acquire() 得到的许可
+     * @param startNanos 获得许可时的 System.nanoTime()，自适应模式用来计算延迟
+     */
+    public void release(long startNanos) {
+        int current = inFlight.getAndDecrement();
+        if (adaptive) {
+            adjust(System.nanoTime(), startNanos, current);
+        }
+        Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean await() {
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            return false;
+        }
+        Thread current = Thread.currentThread();
+        waiters.offer(current);
+        try {
+            long deadline = System.nanoTime() + queueTimeoutNanos;
+            for (;;) {
+                if (tryAcquire()) {
+                    return true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || current.isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiters.remove(current);
+            queued.decrementAndGet();
+        }
+    }
+
+    private void adjust(long now, long startNanos, int inFlightBefore) {
+        long latency = now - startNanos;
+        long baseline = baselineNanos;
+        if (baseline == 0) {
+            baselineNanos = Math.max(1, latency);
+            return;
+        }
+        if (latency > baseline * TOLERANCE) {
+            if (now - lastBackoffNanos >= baseline) {
+                lastBackoffNanos = now;
+                limit = Math.max(1, (int) (limit * BACKOFF_RATIO));
+                increaseCredits.set(0);
+            }
+        } else if (limit < maxLimit && inFlightBefore * 2 >= limit) {
+            if (increaseCredits.incrementAndGet() >= limit) {
+                increaseCredits.set(0);
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+        baselineNanos = Math.max(1, baseline + ((latency - baseline) >> BASELINE_SHIFT));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getWaitedCount() {
+        return waited.sum();
+    }
+}
@@ -0,0 +1,91 @@
+package com.vincent.spring.framework.webmvc.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的对数分桶延迟直方图（单位：微秒）
+ * 每个2的幂区间再平均分成 SUB_BUCKET_COUNT 个子桶，相对误差不超过 1/SUB_BUCKET_COUNT
+ * 计数按线程分散到多个条带上，高并发时多个核不会争用同一个计数器，读取时再把条带加起来
+ * @author vincent
+ */
+public class VincentLatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    //最大记录到 2^32 微秒（约71分钟），更大的值记在最后一个桶
+    private static final int MAX_EXPONENT = 32;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private static final int MAX_STRIPES = 8;
+
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+
+    public VincentLatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES));
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKET_COUNT);
+    }
+
+    public void record(long micros) {
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.incrementAndGet(stripe * BUCKET_COUNT + bucketIndex(micros));
+    }
+
+    /**
+     * 各个桶的计数（所有条带之和），读取时没有加锁，只是近似一致的快照
+     */
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < counts.length(); i++) {
+            snapshot[i % BUCKET_COUNT] += counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param snapshot   snapshot() 的结果
+     * @param percentile 0 ~ 1，例如 0.99
+     * @return 对应分位的延迟上界（微秒），没有数据返回0
+     */
+    public static long percentile(long[] snapshot, double percentile) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(rank, 1)) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(snapshot.length - 1);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        long lower = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
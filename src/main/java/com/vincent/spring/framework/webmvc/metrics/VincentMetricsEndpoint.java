@@ -0,0 +1,90 @@
+package com.vincent.spring.framework.webmvc.metrics;
+
+import com.vincent.spring.framework.webmvc.cache.VincentResponseCache;
+import com.vincent.spring.framework.webmvc.limit.VincentConcurrencyLimiter;
+import com.vincent.spring.framework.webmvc.servlet.VincentHandlerMapping;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * 内置的统计接口，返回所有路由的统计快照（JSON）
+ * 延迟单位为微秒
+ * @author vincent
+ */
+public class VincentMetricsEndpoint {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<VincentHandlerMapping> handlerMappings;
+    //没有打开响应缓存时为null
+    private VincentResponseCache responseCache;
+
+    public VincentMetricsEndpoint(List<VincentHandlerMapping> handlerMappings) {
+        this.handlerMappings = handlerMappings;
+    }
+
+    public void metrics(HttpServletResponse response) throws IOException {
+        StringBuilder json = new StringBuilder(256 * handlerMappings.size() + 16);
+        json.append("{\"routes\":[");
+        boolean first = true;
+        for (VincentHandlerMapping mapping : handlerMappings) {
+            VincentRouteMetrics metrics = mapping.getMetrics();
+            if (metrics == null) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+
+            long[] latency = metrics.getLatency().snapshot();
+            json.append("{\"url\":\"").append(escape(mapping.getUrl()))
+                    .append("\",\"method\":\"").append(escape(mapping.getMethod().getDeclaringClass().getName() + "." + mapping.getMethod().getName()))
+                    .append("\",\"requests\":").append(metrics.getRequests())
+                    .append(",\"errors\":").append(metrics.getErrors())
+                    .append(",\"inFlight\":").append(metrics.getInFlight())
+                    .append(",\"p50\":").append(VincentLatencyHistogram.percentile(latency, 0.5))
+                    .append(",\"p99\":").append(VincentLatencyHistogram.percentile(latency, 0.99))
+                    .append(",\"p999\":").append(VincentLatencyHistogram.percentile(latency, 0.999));
+            VincentConcurrencyLimiter limiter = mapping.getConcurrencyLimiter();
+            if (limiter != null) {
+                json.append(",\"concurrencyLimit\":{\"limit\":").append(limiter.getLimit())
+                        .append(",\"maxLimit\":").append(limiter.getMaxLimit())
+                        .append(",\"inFlight\":").append(limiter.getInFlight())
+                        .append(",\"queued\":").append(limiter.getQueued())
+                        .append(",\"waited\":").append(limiter.getWaitedCount())
+                        .append(",\"rejected\":").append(limiter.getRejectedCount())
+                        .append('}');
+            }
+            json.append('}');
+        }
+        json.append(']');
+        if (responseCache != null) {
+            json.append(",\"responseCache\":{\"hits\":").append(responseCache.getHitCount())
+                    .append(",\"misses\":").append(responseCache.getMissCount())
+                    .append(",\"evictions\":").append(responseCache.getEvictionCount())
+                    .append(",\"rejections\":").append(responseCache.getRejectionCount())
+                    .append(",\"entries\":").append(responseCache.getSize())
+                    .append(",\"bytes\":").append(responseCache.getWeightedSize())
+                    .append(",\"maxBytes\":").append(responseCache.getMaxBytes())
+                    .append('}');
+        }
+        json.append('}');
+
+        byte[] bytes = json.toString().getBytes(UTF_8);
+        response.setContentType("application/json;charset=utf-8");
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    public void setResponseCache(VincentResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
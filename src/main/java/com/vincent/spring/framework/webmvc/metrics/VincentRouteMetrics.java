@@ -0,0 +1,55 @@
+package com.vincent.spring.framework.webmvc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个路由（HandlerMapping）的统计：请求数、错误数、正在处理的请求数、延迟分布
+ * 计数器都是 LongAdder，多个线程同时记录时不会争用同一个缓存行
+ * @author vincent
+ */
+public class VincentRouteMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final VincentLatencyHistogram latency = new VincentLatencyHistogram();
+
+    /**
+     * 请求开始
+     * @return 开始时间，传给 end()
+     */
+    public long begin() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束
+     * @param error 是否以异常结束
+     */
+    public void end(long startNanos, boolean error) {
+        inFlight.decrement();
+        requests.increment();
+        if (error) {
+            errors.increment();
+        }
+        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public VincentLatencyHistogram getLatency() {
+        return latency;
+    }
+}
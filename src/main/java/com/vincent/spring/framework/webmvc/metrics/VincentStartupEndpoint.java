@@ -0,0 +1,29 @@
+package com.vincent.spring.framework.webmvc.metrics;
+
+import com.vincent.spring.framework.core.startup.VincentStartupProfiler;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * 内置的启动统计接口，返回启动报告（JSON），报告在启动完成时已经生成好
+ * @author vincent
+ */
+public class VincentStartupEndpoint {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final VincentStartupProfiler startupProfiler;
+
+    public VincentStartupEndpoint(VincentStartupProfiler startupProfiler) {
+        this.startupProfiler = startupProfiler;
+    }
+
+    public void startup(HttpServletResponse response) throws IOException {
+        byte[] bytes = startupProfiler.toJson().getBytes(UTF_8);
+        response.setContentType("application/json;charset=utf-8");
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+}
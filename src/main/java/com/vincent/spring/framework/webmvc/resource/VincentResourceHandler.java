@@ -0,0 +1,460 @@
+package com.vincent.spring.framework.webmvc.resource;
+
+import com.vincent.spring.framework.webmvc.servlet.VincentHttpCaching;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 静态资源
+ * 1、pathPrefix 下的请求映射到 location 目录（classpath:xxx 或 file:xxx）下的文件，不允许 .. 和隐藏文件；
+ *    classpath 下的目录打包在jar里（WEB-INF/lib、可执行jar）时按zip文件系统读取
+ * 2、容器支持 sendfile 时（Tomcat 的 org.apache.tomcat.sendfile.* 属性）由容器零拷贝发送，
+ *    否则用 FileChannel.transferTo 写到输出流，不把文件读进堆内存；jar里的文件只能按流复制
+ * 3、支持单个区间的 Range 请求（多个区间时返回整个文件）、If-Range、ETag / Last-Modified
+ * 4、文件名带内容指纹（如 app.3f2a9c1b.js）时缓存一年，其它文件按 cachePeriod
+ * 5、文件的元数据按路径缓存，最多每秒检查一次文件是否变化；小文件的内容也缓存在内存里
+ * @author vincent
+ */
+public class VincentResourceHandler {
+
+    public static final int DEFAULT_MEMORY_CACHE_MAX_FILE_SIZE = 16 * 1024;
+    public static final long DEFAULT_MEMORY_CACHE_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final int MAX_CACHED_RESOURCES = 1024;
+    private static final long REVALIDATE_INTERVAL_NANOS = 1000000000L;
+
+    private static final String FINGERPRINTED_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    //文件名里 . 或 - 后面至少8位十六进制的指纹
+    private static final Pattern FINGERPRINTED = Pattern.compile(".*[.-][0-9a-fA-F]{8,}\\.[^./]+$");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private static final Map<String, String> MIME_TYPES = new HashMap<String, String>();
+
+    static {
+        MIME_TYPES.put("html", "text/html;charset=utf-8");
+        MIME_TYPES.put("htm", "text/html;charset=utf-8");
+        MIME_TYPES.put("css", "text/css;charset=utf-8");
+        MIME_TYPES.put("js", "application/javascript;charset=utf-8");
+        MIME_TYPES.put("mjs", "application/javascript;charset=utf-8");
+        MIME_TYPES.put("json", "application/json;charset=utf-8");
+        MIME_TYPES.put("map", "application/json;charset=utf-8");
+        MIME_TYPES.put("txt", "text/plain;charset=utf-8");
+        MIME_TYPES.put("xml", "application/xml;charset=utf-8");
+        MIME_TYPES.put("svg", "image/svg+xml");
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("gif", "image/gif");
+        MIME_TYPES.put("webp", "image/webp");
+        MIME_TYPES.put("ico", "image/x-icon");
+        MIME_TYPES.put("woff", "font/woff");
+        MIME_TYPES.put("woff2", "font/woff2");
+        MIME_TYPES.put("ttf", "font/ttf");
+        MIME_TYPES.put("pdf", "application/pdf");
+        MIME_TYPES.put("wasm", "application/wasm");
+    }
+
+    private final String pathPrefix;
+    private final Path root;
+    //没有指纹的文件的 Cache-Control
+    private final String cacheControl;
+    private final int memoryCacheMaxFileSize;
+    private final long memoryCacheMaxBytes;
+    //用容器的配置补充 MIME_TYPES 里没有的类型，可以为null
+    private final ServletContext servletContext;
+
+    //相对路径 -> 资源
+    private final Map<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+    private long memoryCacheBytes;
+
+    /**
+     * @param pathPrefix 如 /static/
+     * @param location classpath:static 或 file:/var/www/static，classpath 下的目录可以是解压开的，也可以在jar里
+     * @param cachePeriod 没有指纹的文件的 max-age（秒），0 表示每次都要验证，小于0 表示不设置 Cache-Control
+     * @throws IllegalArgumentException location 不存在或者不是目录
+     */
+    public VincentResourceHandler(String pathPrefix, String location, int cachePeriod,
+                                  int memoryCacheMaxFileSize, long memoryCacheMaxBytes, ServletContext servletContext) {
+        this.pathPrefix = pathPrefix.endsWith("/") ? pathPrefix : pathPrefix + "/";
+        this.root = resolveLocation(location);
+        this.cacheControl = cachePeriod < 0 ? null : (cachePeriod == 0 ? "no-cache" : "public, max-age=" + cachePeriod);
+        this.memoryCacheMaxFileSize = memoryCacheMaxFileSize;
+        this.memoryCacheMaxBytes = memoryCacheMaxBytes;
+        this.servletContext = servletContext;
+    }
+
+    private static Path resolveLocation(String location) {
+        Path path;
+        if (location.startsWith("classpath:")) {
+            String name = location.substring("classpath:".length()).replaceAll("^/+", "");
+            URL url = VincentResourceHandler.class.getClassLoader().getResource(name);
+            if (url == null) {
+                throw new IllegalArgumentException("Static resource location is not found : " + location);
+            }
+            try {
+                if ("file".equals(url.getProtocol())) {
+                    path = Paths.get(url.toURI());
+                } else if ("jar".equals(url.getProtocol())) {
+                    path = jarPath(url.toURI());
+                } else {
+                    throw new IllegalArgumentException("Unsupported static resource location : " + url);
+                }
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Static resource location is not a directory : " + location, e);
+            }
+        } else {
+            path = Paths.get(location.startsWith("file:") ? location.substring("file:".length()) : location);
+        }
+        if (!Files.isDirectory(path)) {
+            throw new IllegalArgumentException("Static resource location is not a directory : " + location);
+        }
+        return path.toAbsolutePath().normalize();
+    }
+
+    //jar:file:/x.jar!/static -> x.jar 的zip文件系统里的 /static，文件系统和加载同一个jar的其它代码共用，不关闭
+    private static Path jarPath(URI uri) throws IOException {
+        String spec = uri.toString();
+        int separator = spec.indexOf("!/");
+        URI jar = URI.create(spec.substring(0, separator));
+        FileSystem fileSystem;
+        try {
+            fileSystem = FileSystems.newFileSystem(jar, Collections.<String, Object>emptyMap());
+        } catch (FileSystemAlreadyExistsException e) {
+            fileSystem = FileSystems.getFileSystem(jar);
+        }
+        return fileSystem.getPath(spec.substring(separator + 1));
+    }
+
+    /**
+     * @param path 去掉 contextPath 的请求路径
+     */
+    public boolean matches(String path) {
+        return path.startsWith(pathPrefix);
+    }
+
+    /**
+     * @return false 表示没有这个文件，由调用者返回404
+     */
+    public boolean handle(HttpServletRequest req, HttpServletResponse resp, String path) throws IOException {
+        String method = req.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            resp.setHeader("Allow", "GET, HEAD");
+            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return true;
+        }
+        Resource resource = getResource(path.substring(pathPrefix.length()));
+        if (resource == null) {
+            return false;
+        }
+
+        if (resource.cacheControl != null) {
+            resp.setHeader("Cache-Control", resource.cacheControl);
+        }
+        if (VincentHttpCaching.checkNotModified(req, resp, resource.etag)
+                || VincentHttpCaching.checkNotModified(req, resp, resource.lastModified)) {
+            return true;
+        }
+        resp.setContentType(resource.contentType);
+        resp.setHeader("Accept-Ranges", "bytes");
+
+        long start = 0;
+        long end = resource.length - 1;
+        String range = req.getHeader("Range");
+        if (range != null && ifRangeMatches(req, resource)) {
+            long[] bounds = parseRange(range, resource.length);
+            if (bounds == UNSATISFIABLE) {
+                resp.setHeader("Content-Range", "bytes */" + resource.length);
+                resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return true;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + resource.length);
+            }
+        }
+        long count = end - start + 1;
+        resp.setContentLengthLong(count);
+        if (head || count == 0) {
+            return true;
+        }
+
+        byte[] content = resource.content;
+        if (content != null) {
+            resp.getOutputStream().write(content, (int) start, (int) count);
+        } else if (resource.file.getFileSystem() != FileSystems.getDefault()) {
+            //jar里的文件
+            copy(resource.file, start, count, resp.getOutputStream());
+        } else if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            //servlet返回后由容器发送，end不包含
+            req.setAttribute(SENDFILE_FILENAME, resource.file.toString());
+            req.setAttribute(SENDFILE_START, start);
+            req.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            transfer(resource.file, start, count, resp.getOutputStream());
+        }
+        return true;
+    }
+
+    private static void transfer(Path file, long position, long count, OutputStream out) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (count > 0) {
+                long n = channel.transferTo(position, count, target);
+                if (n <= 0) {
+                    //文件在发送过程中变短了
+                    throw new IOException("Unexpected end of file : " + file);
+                }
+                position += n;
+                count -= n;
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void copy(Path file, long position, long count, OutputStream out) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            while (position > 0) {
+                long skipped = in.skip(position);
+                if (skipped <= 0) {
+                    throw new IOException("Unexpected end of file : " + file);
+                }
+                position -= skipped;
+            }
+            byte[] buffer = new byte[8192];
+            while (count > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, count));
+                if (n < 0) {
+                    throw new IOException("Unexpected end of file : " + file);
+                }
+                out.write(buffer, 0, n);
+                count -= n;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 只支持一个区间：a-b、a-、-n，格式不对或者有多个区间时返回null，表示忽略Range返回整个文件
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                //最后n个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) {
+                return null;
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    //If-Range 是强ETag或者日期，和当前文件不一致时忽略Range
+    private static boolean ifRangeMatches(HttpServletRequest req, Resource resource) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(resource.etag);
+        }
+        try {
+            return req.getDateHeader("If-Range") == resource.lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private Resource getResource(String relativePath) throws IOException {
+        Resource resource = resources.get(relativePath);
+        if (resource != null) {
+            long now = System.nanoTime();
+            if (now - resource.checkedAt < REVALIDATE_INTERVAL_NANOS) {
+                return resource;
+            }
+            BasicFileAttributes attributes = readAttributes(resource.file);
+            if (attributes != null && attributes.size() == resource.length
+                    && attributes.lastModifiedTime().toMillis() == resource.lastModified) {
+                resource.checkedAt = now;
+                return resource;
+            }
+            evict(relativePath, resource);
+        }
+
+        Path file = resolve(relativePath);
+        if (file == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = readAttributes(file);
+        if (attributes == null || !attributes.isRegularFile()) {
+            return null;
+        }
+        resource = new Resource(file, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                contentType(file.getFileName().toString()),
+                FINGERPRINTED.matcher(relativePath).matches() ? FINGERPRINTED_CACHE_CONTROL : cacheControl);
+        if (resource.length <= memoryCacheMaxFileSize) {
+            byte[] content = Files.readAllBytes(file);
+            //读的过程中文件被修改了，不缓存内容
+            if (content.length == resource.length) {
+                resource.content = content;
+            }
+        }
+        cache(relativePath, resource);
+        return resource;
+    }
+
+    /**
+     * 解码路径，不允许 ..、隐藏文件、反斜杠，结果必须在 root 下
+     */
+    private Path resolve(String relativePath) {
+        String decoded;
+        try {
+            decoded = URLDecoder.decode(relativePath.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+        if (decoded.isEmpty() || decoded.indexOf('\\') >= 0 || decoded.indexOf('\0') >= 0) {
+            return null;
+        }
+        for (String segment : decoded.split("/")) {
+            if (segment.startsWith(".")) {
+                return null;
+            }
+        }
+        Path file;
+        try {
+            file = root.resolve(decoded.replaceAll("^/+", "")).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        return file.startsWith(root) ? file : null;
+    }
+
+    private String contentType(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String contentType = dot < 0 ? null : MIME_TYPES.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+        if (contentType == null && servletContext != null) {
+            contentType = servletContext.getMimeType(fileName);
+        }
+        return contentType == null ? "application/octet-stream" : contentType;
+    }
+
+    //超过上限时逐个淘汰，直到放得下；ConcurrentHashMap 的迭代顺序按hash分布，相当于随机淘汰
+    //只是内存超了时只淘汰带内容的条目，只有元数据的条目留着
+    private synchronized void cache(String relativePath, Resource resource) {
+        long bytes = resource.content == null ? 0 : resource.content.length;
+        if (bytes > memoryCacheMaxBytes) {
+            resource.content = null;
+            bytes = 0;
+        }
+        Resource previous = resources.remove(relativePath);
+        if (previous != null && previous.content != null) {
+            memoryCacheBytes -= previous.content.length;
+        }
+        Iterator<Resource> it = resources.values().iterator();
+        while (it.hasNext() && (resources.size() >= MAX_CACHED_RESOURCES || memoryCacheBytes + bytes > memoryCacheMaxBytes)) {
+            Resource cached = it.next();
+            if (cached.content == null && resources.size() < MAX_CACHED_RESOURCES) {
+                continue;
+            }
+            it.remove();
+            if (cached.content != null) {
+                memoryCacheBytes -= cached.content.length;
+            }
+        }
+        resources.put(relativePath, resource);
+        memoryCacheBytes += bytes;
+    }
+
+    private synchronized void evict(String relativePath, Resource resource) {
+        if (resources.remove(relativePath, resource) && resource.content != null) {
+            memoryCacheBytes -= resource.content.length;
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static class Resource {
+        final Path file;
+        final long length;
+        final long lastModified;
+        final String etag;
+        final String contentType;
+        final String cacheControl;
+        //小文件的内容，没有缓存时为null
+        volatile byte[] content;
+        volatile long checkedAt = System.nanoTime();
+
+        Resource(Path file, long length, long lastModified, String contentType, String cacheControl) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+            this.contentType = contentType;
+            this.cacheControl = cacheControl;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * 异步分发时交给Handler的 response
+ * 请求结束（正常完成或者超时）时 close()，之后Handler、视图、JSON输出对 response 的所有修改和输出都被丢弃，
+ * 容器回收、复用的 response 不会再被写入
+ * 所有修改都在同一把锁里检查是否已经关闭，close() 会等正在进行的一次输出结束
+ * @author vincent
+ */
+public class VincentAsyncResponse extends HttpServletResponseWrapper implements VincentPrecompressedResponse {
+
+    private boolean closed;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public VincentAsyncResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    /**
+     * @return true 表示这次调用关闭了 response，由调用者负责结束请求；已经关闭过返回false
+     */
+    public synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized boolean isCommitted() {
+        return closed || super.isCommitted();
+    }
+
+    @Override
+    public synchronized void setStatus(int sc) {
+        if (!closed) {
+            super.setStatus(sc);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public synchronized void setStatus(int sc, String sm) {
+        if (!closed) {
+            super.setStatus(sc, sm);
+        }
+    }
+
+    @Override
+    public synchronized void sendError(int sc) throws IOException {
+        if (!closed) {
+            super.sendError(sc);
+        }
+    }
+
+    @Override
+    public synchronized void sendError(int sc, String msg) throws IOException {
+        if (!closed) {
+            super.sendError(sc, msg);
+        }
+    }
+
+    @Override
+    public synchronized void sendRedirect(String location) throws IOException {
+        if (!closed) {
+            super.sendRedirect(location);
+        }
+    }
+
+    @Override
+    public synchronized void setHeader(String name, String value) {
+        if (!closed) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public synchronized void addHeader(String name, String value) {
+        if (!closed) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public synchronized void setIntHeader(String name, int value) {
+        if (!closed) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public synchronized void addIntHeader(String name, int value) {
+        if (!closed) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public synchronized void setDateHeader(String name, long date) {
+        if (!closed) {
+            super.setDateHeader(name, date);
+        }
+    }
+
+    @Override
+    public synchronized void addDateHeader(String name, long date) {
+        if (!closed) {
+            super.addDateHeader(name, date);
+        }
+    }
+
+    @Override
+    public synchronized void addCookie(Cookie cookie) {
+        if (!closed) {
+            super.addCookie(cookie);
+        }
+    }
+
+    @Override
+    public synchronized void setContentType(String type) {
+        if (!closed) {
+            super.setContentType(type);
+        }
+    }
+
+    @Override
+    public synchronized void setCharacterEncoding(String charset) {
+        if (!closed) {
+            super.setCharacterEncoding(charset);
+        }
+    }
+
+    @Override
+    public synchronized void setContentLength(int len) {
+        if (!closed) {
+            super.setContentLength(len);
+        }
+    }
+
+    @Override
+    public synchronized void setContentLengthLong(long len) {
+        if (!closed) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public synchronized void setLocale(Locale loc) {
+        if (!closed) {
+            super.setLocale(loc);
+        }
+    }
+
+    @Override
+    public synchronized void setBufferSize(int size) {
+        if (!closed) {
+            super.setBufferSize(size);
+        }
+    }
+
+    @Override
+    public synchronized void flushBuffer() throws IOException {
+        if (!closed) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        if (!closed) {
+            super.reset();
+        }
+    }
+
+    @Override
+    public synchronized void resetBuffer() {
+        if (!closed) {
+            super.resetBuffer();
+        }
+    }
+
+    @Override
+    public synchronized String getPrecompressedEncoding() {
+        if (closed || !(getResponse() instanceof VincentPrecompressedResponse)) {
+            return null;
+        }
+        return ((VincentPrecompressedResponse) getResponse()).getPrecompressedEncoding();
+    }
+
+    @Override
+    public synchronized boolean writePrecompressed(byte[] raw, byte[] compressed) throws IOException {
+        if (closed) {
+            return true;
+        }
+        return getResponse() instanceof VincentPrecompressedResponse
+                && ((VincentPrecompressedResponse) getResponse()).writePrecompressed(raw, compressed);
+    }
+
+    @Override
+    public synchronized ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new GuardedOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public synchronized PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new GuardedWriter(super.getWriter()));
+        }
+        return writer;
+    }
+
+    private class GuardedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        GuardedOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.write(b);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.write(b, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.close();
+                }
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+
+    private class GuardedWriter extends Writer {
+
+        private final PrintWriter out;
+
+        GuardedWriter(PrintWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.write(cbuf, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.write(str, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (VincentAsyncResponse.this) {
+                if (!closed) {
+                    out.close();
+                }
+            }
+        }
+    }
+}
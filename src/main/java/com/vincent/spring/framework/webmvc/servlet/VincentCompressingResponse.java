@@ -0,0 +1,350 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.*;
+
+/**
+ * 压缩输出的 response 包装
+ * 先把输出缓存在内存里，超过 minSize 时才开始压缩（设置 Content-Encoding 后边写边压缩），
+ * 结束时还没超过 minSize 的内容原样输出，并设置准确的 Content-Length
+ * Handler 自己设置了 Content-Encoding、调用了 sendError / sendRedirect 时不再压缩
+ * @author vincent
+ */
+public class VincentCompressingResponse extends HttpServletResponseWrapper implements VincentFinishableResponse, VincentPrecompressedResponse {
+
+    private enum State {
+        //还在缓存，是否压缩未定
+        BUFFERING,
+        //已经开始压缩输出
+        COMPRESSING,
+        //不压缩，直接输出
+        PASSTHROUGH,
+        //已经输出了缓存好的压缩结果
+        FINISHED
+    }
+
+    private final VincentResponseCompression compression;
+    private final String encoding;
+
+    private State state = State.BUFFERING;
+    private ByteArrayOutputStream buffer;
+    private OutputStream compressingStream;
+    //Handler设置的长度，只有原样输出时才有意义
+    private long contentLength = -1;
+
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public VincentCompressingResponse(HttpServletResponse response, VincentResponseCompression compression, String encoding) {
+        super(response);
+        this.compression = compression;
+        this.encoding = encoding;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public String getPrecompressedEncoding() {
+        return encoding;
+    }
+
+    /**
+     * 还没有任何输出、并且内容可以压缩时，直接输出已经压缩好的字节，避免每次请求都重新压缩
+     */
+    @Override
+    public boolean writePrecompressed(byte[] raw, byte[] compressed) throws IOException {
+        if (state != State.BUFFERING || (buffer != null && buffer.size() > 0) || writer != null
+                || raw.length < compression.getMinSize() || !compression.isCompressible(getContentType())) {
+            return false;
+        }
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        response.setHeader("Content-Encoding", encoding);
+        response.setContentLength(compressed.length);
+        response.getOutputStream().write(compressed);
+        state = State.FINISHED;
+        return true;
+    }
+
+    /**
+     * 把缓存里剩下的内容输出，压缩流写完结尾，由分发器在请求结束时调用
+     */
+    @Override
+    public void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        switch (state) {
+            case BUFFERING:
+                state = State.PASSTHROUGH;
+                if (buffer != null && buffer.size() > 0) {
+                    getResponse().setContentLength(buffer.size());
+                    buffer.writeTo(getResponse().getOutputStream());
+                } else if (contentLength >= 0) {
+                    getResponse().setContentLengthLong(contentLength);
+                }
+                buffer = null;
+                break;
+            case COMPRESSING:
+                state = State.FINISHED;
+                //只结束压缩，不关闭容器的输出流
+                compressingStream.close();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        if (outputStream == null) {
+            outputStream = new CompressingOutputStream();
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            outputStream = new CompressingOutputStream();
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (state == State.PASSTHROUGH) {
+            super.setContentLengthLong(len);
+        } else {
+            this.contentLength = len;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (interceptHeader(name, value)) {
+            return;
+        }
+        super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (interceptHeader(name, value)) {
+            return;
+        }
+        super.addHeader(name, value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (interceptHeader(name, String.valueOf(value))) {
+            return;
+        }
+        super.setIntHeader(name, value);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        passthroughWithoutBody();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        passthroughWithoutBody();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        passthroughWithoutBody();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        //缓存阶段不提交，否则就没法再决定是否压缩
+        if (state == State.BUFFERING) {
+            return;
+        }
+        flushOutput();
+        super.flushBuffer();
+    }
+
+    private void flushOutput() throws IOException {
+        if (state == State.COMPRESSING) {
+            compressingStream.flush();
+        } else if (state == State.PASSTHROUGH) {
+            getResponse().getOutputStream().flush();
+        }
+    }
+
+    //已经开始输出压缩流时，即使容器还没提交，内容也没法再撤回
+    @Override
+    public boolean isCommitted() {
+        return state == State.COMPRESSING || state == State.FINISHED || super.isCommitted();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (buffer != null) {
+            buffer.reset();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if (buffer != null) {
+            buffer.reset();
+        }
+        if (state == State.BUFFERING || state == State.PASSTHROUGH) {
+            state = State.BUFFERING;
+            contentLength = -1;
+        }
+        //reset 会清掉所有响应头
+        super.addHeader("Vary", "Accept-Encoding");
+    }
+
+    private boolean interceptHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value.trim()));
+            return true;
+        }
+        if ("Content-Encoding".equalsIgnoreCase(name) && state == State.BUFFERING) {
+            //Handler自己编码了内容，原样输出
+            try {
+                startPassthrough();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return false;
+    }
+
+    private void passthroughWithoutBody() {
+        if (state == State.BUFFERING) {
+            buffer = null;
+            state = State.PASSTHROUGH;
+        }
+    }
+
+    private void startPassthrough() throws IOException {
+        state = State.PASSTHROUGH;
+        if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+        if (buffer != null && buffer.size() > 0) {
+            buffer.writeTo(getResponse().getOutputStream());
+        }
+        buffer = null;
+    }
+
+    private void startCompressing() throws IOException {
+        if (!compression.isCompressible(getContentType())) {
+            startPassthrough();
+            return;
+        }
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        response.setHeader("Content-Encoding", encoding);
+        compressingStream = VincentResponseCompression.compressingStream(encoding, new NonClosingOutputStream(response.getOutputStream()));
+        state = State.COMPRESSING;
+        if (buffer != null && buffer.size() > 0) {
+            buffer.writeTo(compressingStream);
+        }
+        buffer = null;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        switch (state) {
+            case BUFFERING:
+                if (buffer == null) {
+                    buffer = new ByteArrayOutputStream(Math.min(compression.getMinSize(), 8192));
+                }
+                if (buffer.size() + len < compression.getMinSize()) {
+                    buffer.write(b, off, len);
+                    return;
+                }
+                startCompressing();
+                write(b, off, len);
+                return;
+            case COMPRESSING:
+                compressingStream.write(b, off, len);
+                return;
+            case PASSTHROUGH:
+                getResponse().getOutputStream().write(b, off, len);
+                return;
+            default:
+                throw new IllegalStateException("Response has already been written");
+        }
+    }
+
+    private class CompressingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            VincentCompressingResponse.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            VincentCompressingResponse.this.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushOutput();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("Non-blocking IO is not supported on a compressing response");
+        }
+    }
+
+    /**
+     * 压缩流结束时不关闭容器的输出流
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
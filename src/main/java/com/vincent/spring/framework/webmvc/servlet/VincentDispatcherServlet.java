@@ -1,20 +1,42 @@
 package com.vincent.spring.framework.webmvc.servlet;
 
+import com.vincent.spring.framework.annotation.VincentConcurrencyLimit;
 import com.vincent.spring.framework.annotation.VincentController;
+import com.vincent.spring.framework.annotation.VincentInterceptorMapping;
 import com.vincent.spring.framework.annotation.VincentRequestMapping;
 import com.vincent.spring.framework.context.VincentApplicationContext;
-
+import com.vincent.spring.framework.core.convert.VincentConversionService;
+import com.vincent.spring.framework.core.convert.VincentConverter;
+import com.vincent.spring.framework.core.startup.VincentStartupProfiler;
+import com.vincent.spring.framework.webmvc.batch.VincentBatchEndpoint;
+import com.vincent.spring.framework.webmvc.cache.VincentCachedResponse;
+import com.vincent.spring.framework.webmvc.cache.VincentCachingResponse;
+import com.vincent.spring.framework.webmvc.cache.VincentResponseCache;
+import com.vincent.spring.framework.webmvc.limit.VincentConcurrencyLimiter;
+import com.vincent.spring.framework.webmvc.metrics.VincentMetricsEndpoint;
+import com.vincent.spring.framework.webmvc.metrics.VincentRouteMetrics;
+import com.vincent.spring.framework.webmvc.metrics.VincentStartupEndpoint;
+import com.vincent.spring.framework.webmvc.resource.VincentResourceHandler;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 委派模式
@@ -23,14 +45,57 @@ import java.util.regex.Pattern;
  */
 public class VincentDispatcherServlet extends HttpServlet {
 
+    private static final int DEFAULT_HANDLER_CACHE_SIZE = 1024;
+    private static final String DEFAULT_METRICS_PATH = "/_vincent/metrics";
+    private static final String DEFAULT_STARTUP_PATH = "/_vincent/startup";
+    private static final String DEFAULT_BATCH_PATH = "/_vincent/batch";
+
+    //Handler调用方式：methodHandle（默认） 或 reflective
+    private static final String INVOKER_METHOD_HANDLE = "methodHandle";
+    private static final String INVOKER_REFLECTIVE = "reflective";
+
+    //Handler返回的CompletionStage，异步分发超时时取消
+    private static final String HANDLER_STAGE_ATTRIBUTE = VincentDispatcherServlet.class.getName() + ".HANDLER_STAGE";
+
     private VincentApplicationContext applicationContext;
 
     private List<VincentHandlerMapping> handlerMappings = new ArrayList<VincentHandlerMapping>();
 
+    //url -> HandlerMapping 的索引，启动时构建
+    private VincentRouteIndex routeIndex;
+
+    private VincentConversionService conversionService;
+
     private Map<VincentHandlerMapping,VincentHandlerAdapter> handlerAdapters = new HashMap<VincentHandlerMapping, VincentHandlerAdapter>();
 
     private List<VincentViewResolver> viewResolvers = new ArrayList<VincentViewResolver>();
 
+    //异常解析器链，最后一个总是 VincentStatusExceptionResolver
+    private List<VincentHandlerExceptionResolver> exceptionResolvers = new ArrayList<VincentHandlerExceptionResolver>();
+    private VincentErrorLogger errorLogger = new VincentErrorLogger(VincentErrorLogger.DEFAULT_INTERVAL_MILLIS);
+
+    //异步模式下执行Handler的线程池，为null表示同步分发
+    private ExecutorService asyncExecutor;
+
+    //批量接口执行子请求的线程池，关闭批量接口时为null
+    private ExecutorService batchExecutor;
+
+    //响应压缩，关闭时为null
+    private VincentResponseCompression compression;
+
+    //响应缓存，关闭时为null
+    private VincentResponseCache responseCache;
+
+    //静态资源，关闭时为null
+    private VincentResourceHandler resourceHandler;
+    private ServletContext servletContext;
+
+    //ETag，关闭时为null
+    private VincentHttpCaching httpCaching;
+    //没有实现VincentLastModified的Controller以启动时间作为Last-Modified
+    private long startupTime;
+    private long asyncTimeout;
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         this.doPost(req,resp);
@@ -39,40 +104,418 @@ public class VincentDispatcherServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
+        //静态资源直接发送文件，不经过压缩、ETag的包装，也不经过路由、拦截器
+        if(this.resourceHandler != null && serveResource(req,resp)){
+            return;
+        }
+
+        //按 Accept-Encoding 压缩输出
+        if(this.compression != null){
+            resp = this.compression.wrap(req,resp);
+        }
+        //按输出内容计算ETag，在压缩之前计算，压缩与否ETag相同
+        if(this.httpCaching != null){
+            resp = this.httpCaching.wrap(req,resp);
+        }
+
+        //异步模式：容器线程只负责把请求交给Handler线程池
+        if(this.asyncExecutor != null && req.isAsyncSupported()){
+            dispatchAsync(req,resp);
+            return;
+        }
+
         //6、委派,根据URL去找到一个对应的Method并通过response返回
         try {
-            doDispatch(req,resp);
+            CompletionStage<?> pending = doDispatch(req,resp);
+            if(pending != null){
+                //同步模式下只能等异步结果完成
+                pending.toCompletableFuture().get();
+            }
         } catch (Exception e) {
+            processDispatchException(req,resp,unwrap(e));
+        }
+        finishResponse(resp);
+
+    }
+
+    /**
+     * @return false 表示不是静态资源路径下的请求
+     */
+    private boolean serveResource(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String path = lookupPath(req);
+        if(!this.resourceHandler.matches(path)){
+            return false;
+        }
+        if(!this.resourceHandler.handle(req,resp,path)){
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            renderError(req,resp,new VincentModelAndView("404"));
+        }
+        return true;
+    }
+
+    /**
+     * 批量接口的子请求，和普通请求走同样的分发流程，只是不再包装压缩、ETag，异步结果在当前线程等待
+     */
+    private void dispatchSubRequest(HttpServletRequest req, HttpServletResponse resp) {
+        try {
+            CompletionStage<?> pending = doDispatch(req,resp);
+            if(pending != null){
+                pending.toCompletableFuture().get();
+            }
+        } catch (Exception e) {
+            processDispatchException(req,resp,unwrap(e));
+        }
+    }
+
+    private void dispatchAsync(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        final AsyncContext asyncContext = req.startAsync(req,resp);
+        asyncContext.setTimeout(this.asyncTimeout);
+        final HttpServletRequest asyncReq = (HttpServletRequest) asyncContext.getRequest();
+        //Handler只能通过它写 response，请求结束后的输出都被丢弃
+        final VincentAsyncResponse asyncResp = new VincentAsyncResponse((HttpServletResponse) asyncContext.getResponse());
+        //超时时取消还在执行的任务和Handler返回的CompletionStage
+        final AtomicReference<Future<?>> task = new AtomicReference<Future<?>>();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if(asyncResp.close()){
+                    HttpServletResponse response = (HttpServletResponse) event.getAsyncContext().getResponse();
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    finishResponse(response);
+                    event.getAsyncContext().complete();
+                    cancel(task.get(),asyncReq);
+                }
+            }
+            @Override
+            public void onComplete(AsyncEvent event) {}
+            @Override
+            public void onError(AsyncEvent event) {}
+            @Override
+            public void onStartAsync(AsyncEvent event) {}
+        });
+
+        try {
+            task.set(this.asyncExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    CompletionStage<?> pending = null;
+                    try {
+                        pending = doDispatch(asyncReq,asyncResp);
+                    } catch (Exception e) {
+                        if(!asyncResp.isClosed()){
+                            processDispatchException(asyncReq,asyncResp,unwrap(e));
+                        }
+                    }
+                    if(pending == null){
+                        complete(asyncContext,asyncResp);
+                        return;
+                    }
+                    if(asyncResp.isClosed()){
+                        //Handler返回之前已经超时
+                        cancel(null,asyncReq);
+                    }
+                    //Handler返回了CompletionStage，不占用线程，完成时再结束请求
+                    pending.whenComplete((value,ex) -> {
+                        if(ex != null && !asyncResp.isClosed()){
+                            processDispatchException(asyncReq,asyncResp,unwrap(ex));
+                        }
+                        complete(asyncContext,asyncResp);
+                    });
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            //线程池已满
+            asyncResp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            complete(asyncContext,asyncResp);
+        }
+    }
+
+    private static void cancel(Future<?> task, HttpServletRequest req) {
+        if(task != null){
+            task.cancel(true);
+        }
+        //取消Handler返回的CompletionStage，后面的拦截器、并发限制、统计都按异常结束
+        Object stage = req.getAttribute(HANDLER_STAGE_ATTRIBUTE);
+        if(stage instanceof CompletionStage){
+            ((CompletionStage<?>) stage).toCompletableFuture().cancel(true);
+        }
+    }
+
+    private void complete(AsyncContext asyncContext, VincentAsyncResponse asyncResp) {
+        if(asyncResp.close()){
             try {
-                processDispatchResult(req,resp,new VincentModelAndView("500"));
-            } catch (Exception e1) {
-                e1.printStackTrace();
-                resp.getWriter().write("500 Exception,Detail : " + Arrays.toString(e.getStackTrace()));
+                finishResponse((HttpServletResponse) asyncContext.getResponse());
+            } catch (IOException e) {
+                errorLogger.log("Failed to finish async response", e);
             }
+            asyncContext.complete();
         }
+    }
 
+    //从外到内结束所有的 response 包装（ETag、压缩），输出还缓存着的内容
+    private static void finishResponse(ServletResponse resp) throws IOException {
+        while (resp instanceof ServletResponseWrapper) {
+            if (resp instanceof VincentFinishableResponse) {
+                ((VincentFinishableResponse) resp).finish();
+            }
+            resp = ((ServletResponseWrapper) resp).getResponse();
+        }
     }
 
-    private void doDispatch(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+    private void processDispatchException(HttpServletRequest req, HttpServletResponse resp, Throwable e) {
+        if(resp.isCommitted()){
+            //已经有内容发给了客户端，状态码改不了，只记录日志
+            this.errorLogger.log("Handler failed after response committed : " + req.getRequestURI(), e);
+            return;
+        }
+        //丢掉Handler已经输出的部分内容和设置的响应头（比如Cache-Control）
+        resp.reset();
+
+        VincentModelAndView mv = null;
+        for (VincentHandlerExceptionResolver resolver : this.exceptionResolvers) {
+            mv = resolver.resolveException(req,resp,e);
+            if(mv != null){ break; }
+        }
+        if(mv == null){
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            mv = new VincentModelAndView(String.valueOf(HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+        }
+        //客户端错误不打印堆栈
+        if(resp.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR){
+            this.errorLogger.log("Handler failed : " + req.getRequestURI(), e);
+        }
+        renderError(req,resp,mv);
+    }
+
+    /**
+     * 输出错误页面，状态码已经设置好
+     * 错误页面都是静态模板，视图里缓存着渲染好、压缩好的内容；没有对应的模板时只返回状态码，不输出任何异常信息
+     */
+    private void renderError(HttpServletRequest req, HttpServletResponse resp, VincentModelAndView mv) {
+        if(mv.getViewName() == null){ return; }
+        try {
+            for (VincentViewResolver viewResolver : this.viewResolvers) {
+                VincentView view = viewResolver.resolveViewName(mv.getViewName());
+                if(null == view){continue;}
+                view.render(mv.getModel(),req,resp);
+                return;
+            }
+            resp.sendError(resp.getStatus());
+        } catch (Exception e) {
+            this.errorLogger.log("Failed to render error view : " + mv.getViewName(), e);
+        }
+    }
+
+    //去掉异步结果、反射调用的包装，拿到真正的异常
+    private Throwable unwrap(Throwable e) {
+        while ((e instanceof ExecutionException || e instanceof CompletionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * @return 如果Handler返回了还没完成的 CompletionStage，返回一个在它完成并输出响应后才完成的 CompletionStage，
+     *         否则响应已经输出，返回null
+     */
+    private CompletionStage<?> doDispatch(final HttpServletRequest req, final HttpServletResponse resp) throws Exception {
         //完成了对HandlerMapping的封装
         //完成了对方法返回值的封装ModelAndView
 
         //1、通过URL获得一个HandlerMapping
         VincentHandlerMapping handler = getHandler(req);
         if(handler == null){
-            processDispatchResult(req,resp,new VincentModelAndView("404"));
-            return;
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            renderError(req,resp,new VincentModelAndView("404"));
+            return null;
+        }
+
+        //并发限制，超过时直接拒绝，不进入Handler，也不计入路由统计
+        final VincentConcurrencyLimiter limiter = handler.getConcurrencyLimiter();
+        if(limiter != null && !limiter.acquire()){
+            resp.setIntHeader("Retry-After",limiter.getRetryAfter());
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return null;
+        }
+        final long acquiredAt = limiter == null ? 0 : System.nanoTime();
+
+        //统计关闭时metrics为null，只多一次判断
+        final VincentRouteMetrics metrics = handler.getMetrics();
+        final long start = metrics == null ? 0 : metrics.begin();
+        CompletionStage<?> pending;
+        try {
+            pending = doHandle(req,resp,handler);
+        } catch (Exception e) {
+            if(metrics != null){ metrics.end(start,true); }
+            if(limiter != null){ limiter.release(acquiredAt); }
+            throw e;
+        }
+        if(pending == null){
+            if(metrics != null){ metrics.end(start,false); }
+            if(limiter != null){ limiter.release(acquiredAt); }
+        }else if(metrics != null || limiter != null){
+            //异步结果完成时才释放许可
+            pending = pending.whenComplete((value,ex) -> {
+                if(metrics != null){ metrics.end(start,ex != null); }
+                if(limiter != null){ limiter.release(acquiredAt); }
+            });
+        }
+        return pending;
+    }
+
+    private CompletionStage<?> doHandle(final HttpServletRequest req, final HttpServletResponse resp, final VincentHandlerMapping handler) throws Exception {
+        //拦截器在启动时已经按路由确定好，这里只是按顺序调用
+        final VincentHandlerInterceptor[] interceptors = handler.getInterceptors();
+        if(interceptors.length == 0){
+            return doHandleInternal(req,resp,handler);
+        }
+
+        int applied = 0;
+        CompletionStage<?> pending;
+        try {
+            while (applied < interceptors.length) {
+                if(!interceptors[applied].preHandle(req,resp,handler)){
+                    triggerAfterCompletion(req,resp,handler,applied,null);
+                    return null;
+                }
+                applied++;
+            }
+            pending = doHandleInternal(req,resp,handler);
+        } catch (Exception e) {
+            triggerAfterCompletion(req,resp,handler,applied,e);
+            throw e;
+        }
+        if(pending == null){
+            triggerAfterCompletion(req,resp,handler,applied,null);
+            return null;
+        }
+        return pending.whenComplete((value,ex) -> triggerAfterCompletion(req,resp,handler,interceptors.length,ex == null ? null : unwrap(ex)));
+    }
+
+    private void applyPostHandle(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler, VincentModelAndView mv) throws Exception {
+        VincentHandlerInterceptor[] interceptors = handler.getInterceptors();
+        for (int i = interceptors.length - 1; i >= 0; i--) {
+            interceptors[i].postHandle(req,resp,handler,mv);
+        }
+    }
+
+    //按相反的顺序调用前 count 个拦截器的 afterCompletion，拦截器自己的异常只记录日志
+    private void triggerAfterCompletion(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler, int count, Throwable ex) {
+        VincentHandlerInterceptor[] interceptors = handler.getInterceptors();
+        for (int i = count - 1; i >= 0; i--) {
+            try {
+                interceptors[i].afterCompletion(req,resp,handler,ex);
+            } catch (Exception e) {
+                this.errorLogger.log("Interceptor afterCompletion failed : " + interceptors[i].getClass().getName(), e);
+            }
         }
+    }
 
+    private CompletionStage<?> doHandleInternal(final HttpServletRequest req, final HttpServletResponse resp, VincentHandlerMapping handler) throws Exception {
+        //HTTP缓存策略，Last-Modified 没有变化时不调用Handler
+        if(handler.getCacheControl() != null && applyCacheControl(req,resp,handler)){
+            return null;
+        }
+
+        //响应缓存：命中时直接输出，不再绑定参数、调用Handler
+        if(this.responseCache != null && handler.getCacheable() != null && isCacheableRequest(req)){
+            return doHandleCached(req,resp,handler);
+        }
+        return invokeHandler(req,resp,handler);
+    }
+
+    private CompletionStage<?> doHandleCached(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler) throws Exception {
+        final String key = cacheKey(req,handler);
+        VincentCachedResponse cached = this.responseCache.get(key);
+        if(cached != null){
+            cached.writeTo(resp);
+            return null;
+        }
+
+        //没有命中：照常输出，同时记录下输出的内容
+        final VincentCachingResponse capture = new VincentCachingResponse(resp,this.responseCache.getMaxEntryBytes());
+        final long ttlNanos = TimeUnit.SECONDS.toNanos(handler.getCacheable().ttl());
+        CompletionStage<?> pending = invokeHandler(req,capture,handler);
+        if(pending == null){
+            cacheResponse(key,capture,ttlNanos);
+            return null;
+        }
+        return pending.thenRun(() -> cacheResponse(key,capture,ttlNanos));
+    }
+
+    private void cacheResponse(String key, VincentCachingResponse capture, long ttlNanos) {
+        VincentCachedResponse response = capture.toCachedResponse();
+        if(response != null){
+            this.responseCache.put(key,response,ttlNanos);
+        }
+    }
+
+    //实际的请求路径 + 选定的参数，参数顺序在启动时已经固定
+    private static String cacheKey(HttpServletRequest req, VincentHandlerMapping handler) {
+        StringBuilder key = new StringBuilder(64).append(req.getRequestURI());
+        char separator = '?';
+        for (String name : handler.getCacheKeyParams()) {
+            key.append(separator).append(name).append('=');
+            separator = '&';
+            String[] values = req.getParameterValues(name);
+            if(values == null){ continue; }
+            //每个值前面加上长度，值里有 & = , 时不同的参数组合也不会得到同一个key；没有这个参数时 = 后面为空
+            for (int i = 0; i < values.length; i++) {
+                if(i > 0){ key.append(','); }
+                key.append(values[i].length()).append(':').append(values[i]);
+            }
+        }
+        return key.toString();
+    }
+
+    private CompletionStage<?> invokeHandler(final HttpServletRequest req, final HttpServletResponse resp, final VincentHandlerMapping handler) throws Exception {
         //2、根据一个HandlerMaping获得一个HandlerAdapter
-        VincentHandlerAdapter ha = getHandlerAdapter(handler);
+        final VincentHandlerAdapter ha = getHandlerAdapter(handler);
 
         //3、解析某一个方法的形参和返回值之后，统一封装为ModelAndView对象
-        VincentModelAndView mv = ha.handler(req,resp,handler);
+        Object result = ha.handle(req,resp,handler);
+        if(result instanceof CompletionStage){
+            req.setAttribute(HANDLER_STAGE_ATTRIBUTE,result);
+            return ((CompletionStage<?>) result).thenAccept(value -> {
+                try {
+                    VincentModelAndView mv = ha.handleReturnValue(value,resp);
+                    applyPostHandle(req,resp,handler,mv);
+                    processDispatchResult(req,resp,mv);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+        if(result instanceof Future){
+            result = ((Future<?>) result).get();
+        }
+        VincentModelAndView mv = ha.handleReturnValue(result,resp);
+        applyPostHandle(req,resp,handler,mv);
 
         // 就把ModelAndView变成一个ViewResolver
         processDispatchResult(req,resp,mv);
+        return null;
+    }
+
+    /**
+     * @return true 表示已经返回304
+     */
+    private boolean applyCacheControl(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler) {
+        if(handler.getCacheControlHeader() != null){
+            resp.setHeader("Cache-Control",handler.getCacheControlHeader());
+        }
+        if(!handler.getCacheControl().lastModified() || !isCacheableRequest(req)){ return false; }
 
+        Object controller = handler.getController();
+        long lastModified = controller instanceof VincentLastModified
+                ? ((VincentLastModified) controller).getLastModified(req)
+                : this.startupTime;
+        return VincentHttpCaching.checkNotModified(req,resp,lastModified);
+    }
+
+    private static boolean isCacheableRequest(HttpServletRequest req) {
+        String method = req.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
     }
 
     private VincentHandlerAdapter getHandlerAdapter(VincentHandlerMapping handler) {
@@ -86,31 +529,62 @@ public class VincentDispatcherServlet extends HttpServlet {
 
         for (VincentViewResolver viewResolver : this.viewResolvers) {
             VincentView view = viewResolver.resolveViewName(mv.getViewName());
+            if(null == view){continue;}
+            //模板没变、模型里用到的值也没变时，不用渲染直接返回304
+            if(this.httpCaching != null && isCacheableRequest(req) && resp.getStatus() == HttpServletResponse.SC_OK
+                    && VincentHttpCaching.checkNotModified(req,resp,view.getETag(mv.getModel()))){
+                return;
+            }
             //直接往浏览器输出
             view.render(mv.getModel(),req,resp);
             return;
         }
+        if(mv.getViewName() != null){
+            throw new IllegalStateException("Could not resolve view with name '" + mv.getViewName() + "'");
+        }
     }
 
     private VincentHandlerMapping getHandler(HttpServletRequest req) {
         if(this.handlerMappings.isEmpty()){return  null;}
+        return routeIndex.lookup(lookupPath(req));
+    }
+
+    //去掉contextPath、合并多余的 /
+    static String lookupPath(HttpServletRequest req) {
         String url = req.getRequestURI();
         String contextPath = req.getContextPath();
-        url = url.replaceAll(contextPath,"").replaceAll("/+","/");
+        if(contextPath != null && contextPath.length() > 0 && url.startsWith(contextPath)){
+            url = url.substring(contextPath.length());
+        }
+        if(url.indexOf("//") >= 0){
+            url = url.replaceAll("/+","/");
+        }
+        return url;
+    }
 
-        for (VincentHandlerMapping mapping : handlerMappings) {
-            Matcher matcher = mapping.getPattern().matcher(url);
-            if(!matcher.matches()){continue;}
-            return mapping;
+    @Override
+    public void destroy() {
+        if(this.asyncExecutor != null){
+            this.asyncExecutor.shutdown();
         }
-        return null;
+        if(this.batchExecutor != null){
+            this.batchExecutor.shutdown();
+        }
+        for (VincentViewResolver viewResolver : this.viewResolvers) {
+            viewResolver.close();
+        }
+        super.destroy();
     }
 
     @Override
     public void init(ServletConfig config) throws ServletException {
 
+        //启动统计从这里开始计时，是否打开由配置文件决定
+        VincentStartupProfiler startupProfiler = new VincentStartupProfiler();
+        this.servletContext = config.getServletContext();
+
         //初始化Spring核心IoC容器
-        applicationContext = new VincentApplicationContext(config.getInitParameter("contextConfigLocation"));
+        applicationContext = new VincentApplicationContext(startupProfiler, config.getInitParameter("contextConfigLocation"));
 
         //完成了IoC、DI和MVC部分对接
 
@@ -118,53 +592,381 @@ public class VincentDispatcherServlet extends HttpServlet {
         initStrategies(applicationContext);
 
         System.out.println("Vincent Spring framework is init.");
+
+        //启动报告、启动时间预算
+        reportStartup(applicationContext);
     }
 
     private void initStrategies(VincentApplicationContext context) {
+        //每个组件的初始化作为启动统计的一个阶段
+        VincentStartupProfiler profiler = context.getStartupProfiler();
 //        //多文件上传的组件
 //        initMultipartResolver(context);
 //        //初始化本地语言环境
 //        initLocaleResolver(context);
 //        //初始化模板处理器
 //        initThemeResolver(context);
+        //异常日志，分发器和批量接口共用
+        profiler.run("mvc.errorLogger", () -> initErrorLogger(context));
+        //参数类型转换
+        profiler.run("mvc.conversionService", () -> initConversionService(context));
         //handlerMapping
-        initHandlerMappings(context);
+        profiler.run("mvc.handlerMappings", () -> initHandlerMappings(context));
+        //响应缓存
+        profiler.run("mvc.responseCache", () -> initResponseCache(context));
+        //启动统计接口
+        profiler.run("mvc.startupEndpoint", () -> initStartupEndpoint(context));
+        //批量接口
+        profiler.run("mvc.batchEndpoint", () -> initBatchEndpoint(context));
+        //路由统计
+        profiler.run("mvc.handlerMetrics", () -> initHandlerMetrics(context));
+        //拦截器
+        profiler.run("mvc.handlerInterceptors", () -> initHandlerInterceptors(context));
+        //并发限制
+        profiler.run("mvc.concurrencyLimits", () -> initConcurrencyLimits(context));
         //初始化参数适配器
-        initHandlerAdapters(context);
-//        //初始化异常拦截器
-//        initHandlerExceptionResolvers(context);
+        profiler.run("mvc.handlerAdapters", () -> initHandlerAdapters(context));
+        //初始化异常拦截器
+        profiler.run("mvc.handlerExceptionResolvers", () -> initHandlerExceptionResolvers(context));
 //        //初始化视图预处理器
 //        initRequestToViewNameTranslator(context);
         //初始化视图转换器
-        initViewResolvers(context);
+        profiler.run("mvc.viewResolvers", () -> initViewResolvers(context));
+        //异步分发
+        profiler.run("mvc.asyncExecutor", () -> initAsyncExecutor(context));
+        //响应压缩
+        profiler.run("mvc.responseCompression", () -> initResponseCompression(context));
+        //ETag / Last-Modified
+        profiler.run("mvc.httpCaching", () -> initHttpCaching(context));
+        //静态资源
+        profiler.run("mvc.resourceHandler", () -> initResourceHandler(context));
 //        //FlashMap管理器
 //        initFlashMapManager(context);
     }
 
-    private void initViewResolvers(VincentApplicationContext context) {
-        String templateRoot = context.getConfig().getProperty("templateRoot");
-        String templateRootPath = this.getClass().getClassLoader().getResource(templateRoot).getFile();
+    /**
+     * 输出启动报告，配置了 startupReportFile 时把JSON写到文件里，方便部署流水线检查
+     * 超过 startupBudgetMillis 时打印警告，startupBudgetEnforced=true 时初始化失败
+     */
+    private void reportStartup(VincentApplicationContext context) throws ServletException {
+        VincentStartupProfiler profiler = context.getStartupProfiler();
+        if(!profiler.isEnabled()){ return; }
+
+        Properties config = context.getConfig();
+        profiler.finish(
+                Integer.parseInt(config.getProperty("startupProfilerTopBeans", String.valueOf(VincentStartupProfiler.DEFAULT_TOP_BEANS)).trim()),
+                Long.parseLong(config.getProperty("startupBudgetMillis", "0").trim()));
+        System.out.println(profiler.report());
+
+        String reportFile = config.getProperty("startupReportFile", "").trim();
+        if(!"".equals(reportFile)){
+            try {
+                Files.write(Paths.get(reportFile), profiler.toJson().getBytes(Charset.forName("UTF-8")));
+            } catch (IOException e) {
+                errorLogger.log("Failed to write startup report : " + reportFile, e);
+            }
+        }
 
-        File templateRootDir = new File(templateRootPath);
-        for (File file : templateRootDir.listFiles()) {
-            this.viewResolvers.add(new VincentViewResolver(templateRoot));
+        if(profiler.isOverBudget()){
+            String message = "Startup took " + profiler.getTotalMillis() + " ms, over the budget of " + profiler.getBudgetMillis() + " ms";
+            if(Boolean.parseBoolean(config.getProperty("startupBudgetEnforced", "false").trim())){
+                throw new ServletException(message);
+            }
+            System.out.println(message);
         }
     }
 
+    private void initAsyncExecutor(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("asyncDispatch", "false").trim())){ return; }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.asyncExecutor = VincentHandlerExecutors.create(
+                config.getProperty("asyncExecutor", VincentHandlerExecutors.TYPE_AUTO).trim(),
+                Integer.parseInt(config.getProperty("asyncPoolSize", String.valueOf(cores * 4)).trim()),
+                Integer.parseInt(config.getProperty("asyncQueueSize", "1024").trim()),
+                this.errorLogger);
+        this.asyncTimeout = Long.parseLong(config.getProperty("asyncTimeout", "30000").trim());
+        System.out.println("Async dispatch is enabled : " + this.asyncExecutor);
+    }
+
+    private void initResponseCompression(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("compressionEnabled", "false").trim())){ return; }
+
+        this.compression = new VincentResponseCompression(
+                Integer.parseInt(config.getProperty("compressionMinSize", String.valueOf(VincentResponseCompression.DEFAULT_MIN_SIZE)).trim()),
+                config.getProperty("compressionMimeTypes", VincentResponseCompression.DEFAULT_MIME_TYPES),
+                Boolean.parseBoolean(config.getProperty("compressionDeflate", "true").trim()));
+    }
+
+    private void initHttpCaching(VincentApplicationContext context) {
+        this.startupTime = System.currentTimeMillis();
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("etagEnabled", "false").trim())){ return; }
+
+        this.httpCaching = new VincentHttpCaching(
+                Integer.parseInt(config.getProperty("etagMaxSize", String.valueOf(VincentHttpCaching.DEFAULT_ETAG_MAX_SIZE)).trim()));
+    }
+
+    private void initResourceHandler(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("staticResourcesEnabled", "false").trim())){ return; }
+
+        try {
+            this.resourceHandler = new VincentResourceHandler(
+                    config.getProperty("staticResourcePath", "/static/").trim(),
+                    config.getProperty("staticResourceLocation", "classpath:static").trim(),
+                    Integer.parseInt(config.getProperty("staticResourceCachePeriod", "0").trim()),
+                    Integer.parseInt(config.getProperty("staticResourceMemoryCacheMaxFileSize", String.valueOf(VincentResourceHandler.DEFAULT_MEMORY_CACHE_MAX_FILE_SIZE)).trim()),
+                    Long.parseLong(config.getProperty("staticResourceMemoryCacheMaxBytes", String.valueOf(VincentResourceHandler.DEFAULT_MEMORY_CACHE_MAX_BYTES)).trim()),
+                    this.servletContext);
+        } catch (IllegalArgumentException e) {
+            //静态资源目录有问题不影响Controller，只关闭静态资源
+            System.err.println("Static resources are disabled : " + e.getMessage());
+            return;
+        }
+        System.out.println("Static resources : " + config.getProperty("staticResourcePath", "/static/").trim());
+    }
+
+    private void initViewResolvers(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        String templateRoot = config.getProperty("templateRoot");
+        boolean htmlEscape = Boolean.parseBoolean(config.getProperty("templateHtmlEscape", "false").trim());
+        boolean productionMode = Boolean.parseBoolean(config.getProperty("templateProductionMode", "false").trim());
+
+        //整个模板目录只需要一个解析器，视图在解析器里缓存
+        VincentViewResolver viewResolver = new VincentViewResolver(templateRoot, htmlEscape);
+        viewResolver.setCacheSize(Integer.parseInt(config.getProperty("viewCacheSize", "256").trim()));
+        try {
+            viewResolver.warmUp();
+            if(!productionMode){
+                viewResolver.startWatching();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        this.viewResolvers.add(viewResolver);
+    }
+
     private void initHandlerAdapters(VincentApplicationContext context) {
         for (VincentHandlerMapping handlerMapping : handlerMappings) {
             this.handlerAdapters.put(handlerMapping,new VincentHandlerAdapter());
         }
     }
 
+    private void initHandlerExceptionResolvers(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        //容器里实现了VincentHandlerExceptionResolver的Bean优先
+        for (VincentHandlerExceptionResolver resolver : context.getBeansOfType(VincentHandlerExceptionResolver.class).values()) {
+            this.exceptionResolvers.add(resolver);
+            System.out.println("Registered exception resolver : " + resolver.getClass().getName());
+        }
+        this.exceptionResolvers.add(new VincentStatusExceptionResolver(config.getProperty("exceptionStatusMappings")));
+    }
+
+    private void initErrorLogger(VincentApplicationContext context) {
+        this.errorLogger = new VincentErrorLogger(Long.parseLong(context.getConfig()
+                .getProperty("exceptionLogInterval", String.valueOf(VincentErrorLogger.DEFAULT_INTERVAL_MILLIS)).trim()));
+    }
+
+    private VincentHandlerInvoker createInvoker(String invokerMode, Object instance, Method method) {
+        if(INVOKER_REFLECTIVE.equals(invokerMode)){
+            return new VincentReflectiveHandlerInvoker(instance,method);
+        }
+        if(!INVOKER_METHOD_HANDLE.equals(invokerMode)){
+            throw new IllegalArgumentException("Unknown handlerInvoker : " + invokerMode);
+        }
+        try {
+            return new VincentMethodHandleInvoker(instance,method);
+        } catch (IllegalAccessException e) {
+            //无法生成MethodHandle时退回反射调用
+            System.out.println("Fall back to reflective invoker : " + method + "," + e.getMessage());
+            return new VincentReflectiveHandlerInvoker(instance,method);
+        }
+    }
+
+    private void initResponseCache(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("responseCacheEnabled", "false").trim())){ return; }
+
+        this.responseCache = new VincentResponseCache(
+                Long.parseLong(config.getProperty("responseCacheMaxBytes", String.valueOf(VincentResponseCache.DEFAULT_MAX_BYTES)).trim()),
+                Long.parseLong(config.getProperty("responseCacheMaxEntryBytes", String.valueOf(VincentResponseCache.DEFAULT_MAX_ENTRY_BYTES)).trim()));
+    }
+
+    private void initStartupEndpoint(VincentApplicationContext context) {
+        VincentStartupProfiler profiler = context.getStartupProfiler();
+        if(!profiler.isEnabled()){ return; }
+
+        String url = context.getConfig().getProperty("startupProfilerPath", DEFAULT_STARTUP_PATH).trim();
+        registerEndpoint(url, new VincentStartupEndpoint(profiler), "startup", HttpServletResponse.class);
+    }
+
+    private void initHandlerMetrics(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("metricsEnabled", "false").trim())){ return; }
+
+        String url = config.getProperty("metricsPath", DEFAULT_METRICS_PATH).trim();
+        VincentMetricsEndpoint endpoint = new VincentMetricsEndpoint(this.handlerMappings);
+        endpoint.setResponseCache(this.responseCache);
+        registerEndpoint(url, endpoint, "metrics", HttpServletResponse.class);
+
+        for (VincentHandlerMapping handlerMapping : handlerMappings) {
+            handlerMapping.setMetrics(new VincentRouteMetrics());
+        }
+    }
+
+    private void initBatchEndpoint(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("batchEnabled", "false").trim())){ return; }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.batchExecutor = VincentHandlerExecutors.create(
+                config.getProperty("batchExecutor", VincentHandlerExecutors.TYPE_AUTO).trim(),
+                Integer.parseInt(config.getProperty("batchPoolSize", String.valueOf(cores * 2)).trim()),
+                Integer.parseInt(config.getProperty("batchQueueSize", "256").trim()),
+                this.errorLogger);
+        String url = config.getProperty("batchPath", DEFAULT_BATCH_PATH).trim();
+        VincentBatchEndpoint endpoint = new VincentBatchEndpoint(url, this::dispatchSubRequest, this.batchExecutor, this.errorLogger,
+                Integer.parseInt(config.getProperty("batchMaxRequests", String.valueOf(VincentBatchEndpoint.DEFAULT_MAX_REQUESTS)).trim()),
+                Integer.parseInt(config.getProperty("batchParallelism", String.valueOf(VincentBatchEndpoint.DEFAULT_PARALLELISM)).trim()));
+        registerEndpoint(url, endpoint, "batch", HttpServletRequest.class, HttpServletResponse.class);
+    }
+
+    //内置的接口也作为一个普通的HandlerMapping注册
+    private void registerEndpoint(String url, Object endpoint, String methodName, Class<?>... parameterTypes) {
+        try {
+            Method method = endpoint.getClass().getMethod(methodName, parameterTypes);
+            VincentHandlerMapping handlerMapping = new VincentHandlerMapping(url,endpoint,method);
+            if(routeIndex.register(url,handlerMapping) == null){
+                handlerMappings.add(handlerMapping);
+                System.out.println("Mapped : " + url + "," + method);
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void initHandlerInterceptors(VincentApplicationContext context) {
+        List<VincentHandlerInterceptor> interceptors = new ArrayList<VincentHandlerInterceptor>(
+                context.getBeansOfType(VincentHandlerInterceptor.class).values());
+        if(interceptors.isEmpty()){ return; }
+        //order相同时保持注册顺序
+        interceptors.sort(Comparator.comparingInt(interceptor -> {
+            VincentInterceptorMapping mapping = interceptor.getClass().getAnnotation(VincentInterceptorMapping.class);
+            return mapping == null ? 0 : mapping.order();
+        }));
+
+        //每个拦截器的路径模式只编译一次
+        VincentPathPattern[][] includes = new VincentPathPattern[interceptors.size()][];
+        VincentPathPattern[][] excludes = new VincentPathPattern[interceptors.size()][];
+        for (int i = 0; i < interceptors.size(); i++) {
+            VincentInterceptorMapping mapping = interceptors.get(i).getClass().getAnnotation(VincentInterceptorMapping.class);
+            includes[i] = compilePatterns(mapping == null ? new String[]{"/**"} : mapping.value());
+            excludes[i] = compilePatterns(mapping == null ? new String[0] : mapping.exclude());
+            System.out.println("Registered interceptor : " + interceptors.get(i).getClass().getName());
+        }
+
+        //纯文本路由适用的拦截器在这里确定下来，请求时不再做路径匹配
+        //带通配符的路由对应很多实际路径，拦截器的路径模式可能只覆盖其中一部分，改为按请求路径匹配
+        List<VincentHandlerInterceptor> matched = new ArrayList<VincentHandlerInterceptor>();
+        for (VincentHandlerMapping handlerMapping : handlerMappings) {
+            matched.clear();
+            boolean wildcardRoute = handlerMapping.getUrl().contains("*");
+            for (int i = 0; i < interceptors.size(); i++) {
+                if(!wildcardRoute){
+                    if(!matchesAny(excludes[i],handlerMapping.getUrl()) && matchesAny(includes[i],handlerMapping.getUrl())){
+                        matched.add(interceptors.get(i));
+                    }
+                }else if(excludes[i].length == 0 && matchesAll(includes[i])){
+                    matched.add(interceptors.get(i));
+                }else{
+                    matched.add(new VincentPathMatchingInterceptor(interceptors.get(i),includes[i],excludes[i]));
+                }
+            }
+            handlerMapping.setInterceptors(matched.toArray(new VincentHandlerInterceptor[matched.size()]));
+        }
+    }
+
+    private void initConcurrencyLimits(VincentApplicationContext context) {
+        Properties config = context.getConfig();
+        if(!Boolean.parseBoolean(config.getProperty("concurrencyLimitEnabled", "false").trim())){ return; }
+        //没有注解的路由使用的限制，0 表示不限制
+        int defaultLimit = Integer.parseInt(config.getProperty("concurrencyLimitDefault", "0").trim());
+        boolean defaultAdaptive = Boolean.parseBoolean(config.getProperty("concurrencyLimitAdaptive", "false").trim());
+
+        for (VincentHandlerMapping handlerMapping : handlerMappings) {
+            VincentConcurrencyLimit annotation = handlerMapping.getMethod().getAnnotation(VincentConcurrencyLimit.class);
+            if(annotation == null){
+                annotation = handlerMapping.getController().getClass().getAnnotation(VincentConcurrencyLimit.class);
+            }
+            VincentConcurrencyLimiter limiter = null;
+            if(annotation != null){
+                limiter = new VincentConcurrencyLimiter(annotation.value(),annotation.queue(),annotation.queueTimeout(),
+                        annotation.adaptive(),annotation.retryAfter());
+            }else if(defaultLimit > 0){
+                limiter = new VincentConcurrencyLimiter(defaultLimit,0,0,defaultAdaptive,1);
+            }
+            if(limiter != null){
+                handlerMapping.setConcurrencyLimiter(limiter);
+                System.out.println("Concurrency limit : " + handlerMapping.getUrl() + "," + limiter.getMaxLimit()
+                        + (limiter.isAdaptive() ? " (adaptive)" : ""));
+            }
+        }
+    }
+
+    private static VincentPathPattern[] compilePatterns(String[] patterns) {
+        VincentPathPattern[] compiled = new VincentPathPattern[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            compiled[i] = new VincentPathPattern(patterns[i]);
+        }
+        return compiled;
+    }
+
+    //包含 /** 时匹配所有路径
+    private static boolean matchesAll(VincentPathPattern[] patterns) {
+        for (VincentPathPattern pattern : patterns) {
+            if("/**".equals(pattern.toString())){ return true; }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(VincentPathPattern[] patterns, String url) {
+        for (VincentPathPattern pattern : patterns) {
+            if(pattern.matches(url)){ return true; }
+        }
+        return false;
+    }
+
+    private void initConversionService(VincentApplicationContext context) {
+        this.conversionService = new VincentConversionService();
+        //容器里实现了VincentConverter的Bean都注册为自定义转换器
+        for (VincentConverter<?> converter : context.getBeansOfType(VincentConverter.class).values()) {
+            conversionService.addConverter(converter);
+            System.out.println("Registered converter : " + converter.getClass().getName());
+        }
+    }
+
     private void initHandlerMappings(VincentApplicationContext context) {
+        String cacheSize = context.getConfig().getProperty("handlerCacheSize", String.valueOf(DEFAULT_HANDLER_CACHE_SIZE));
+        this.routeIndex = new VincentRouteIndex(Integer.parseInt(cacheSize.trim()));
+        String invokerMode = context.getConfig().getProperty("handlerInvoker", INVOKER_METHOD_HANDLE).trim();
+
         if(this.applicationContext.getBeanDefinitionCount() == 0){ return;}
 
-        for (String beanName : this.applicationContext.getBeanDefinitionNames()) {
+        //同一个Controller会以beanName、类名多次出现，只注册一次
+        Set<Class<?>> mappedControllers = new HashSet<Class<?>>();
+        String[] beanNames = this.applicationContext.getBeanDefinitionNames();
+        //排序后注册顺序固定，不依赖HashMap的遍历顺序
+        Arrays.sort(beanNames);
+        for (String beanName : beanNames) {
+            //只看BeanDefinition里的类型，不是Controller的bean在懒加载模式下不会被提前创建
+            Class<?> clazz = applicationContext.getType(beanName);
+
+            if(clazz == null || !clazz.isAnnotationPresent(VincentController.class)){ continue; }
+            if(!mappedControllers.add(clazz)){ continue; }
             Object instance = applicationContext.getBean(beanName);
-            Class<?> clazz = instance.getClass();
-
-            if(!clazz.isAnnotationPresent(VincentController.class)){ continue; }
 
             //相当于提取 class上配置的url
             String baseUrl = "";
@@ -180,11 +982,17 @@ public class VincentDispatcherServlet extends HttpServlet {
                 VincentRequestMapping requestMapping = method.getAnnotation(VincentRequestMapping.class);
 
                 // //demo//query
-                String regex = ("/" + baseUrl + "/" + requestMapping.value().replaceAll("\\*",".*")).replaceAll("/+","/");
-                Pattern pattern = Pattern.compile(regex);
+                String url = ("/" + baseUrl + "/" + requestMapping.value()).replaceAll("/+","/");
                 //handlerMapping.put(url,method);
-                handlerMappings.add(new VincentHandlerMapping(pattern,instance,method));
-                System.out.println("Mapped : " + regex + "," + method);
+                VincentHandlerMapping handlerMapping = new VincentHandlerMapping(url,instance,method,conversionService);
+                handlerMapping.setInvoker(createInvoker(invokerMode,instance,method));
+                VincentHandlerMapping existing = routeIndex.register(url,handlerMapping);
+                if(existing != null){
+                    System.out.println("Ambiguous mapping : " + url + "," + method + " is ignored, already mapped to " + existing.getMethod());
+                    continue;
+                }
+                handlerMappings.add(handlerMapping);
+                System.out.println("Mapped : " + url + "," + method);
             }
 
         }
@@ -0,0 +1,283 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * 根据输出内容计算ETag的 response 包装（shallow ETag）
+ * 把 200 的响应缓存在内存里，结束时计算内容的哈希作为ETag，和 If-None-Match 匹配时只返回304，不输出内容
+ * 超过 maxSize、已经设置了ETag（比如视图在渲染前已经做过检查）、sendError / sendRedirect 时直接输出
+ * 视图输出压缩好的内容时按未压缩的内容计算ETag，压缩好的内容交给内层的压缩 response
+ * @author vincent
+ */
+public class VincentETagResponse extends HttpServletResponseWrapper implements VincentFinishableResponse, VincentPrecompressedResponse {
+
+    private final HttpServletRequest request;
+    private final int maxSize;
+
+    private ContentBuffer buffer;
+    private boolean passthrough;
+    private boolean finished;
+    private long contentLength = -1;
+
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public VincentETagResponse(HttpServletRequest request, HttpServletResponse response, int maxSize) {
+        super(response);
+        this.request = request;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (writer != null) {
+            writer.flush();
+        }
+        if (passthrough) {
+            return;
+        }
+        int size = buffer == null ? 0 : buffer.size();
+        if (size == 0 || getStatus() != SC_OK) {
+            startPassthrough();
+            return;
+        }
+        long hash = VincentHttpCaching.hash(VincentHttpCaching.hashSeed(), buffer.array(), 0, size);
+        if (VincentHttpCaching.checkNotModified(request, (HttpServletResponse) getResponse(), VincentHttpCaching.weakETag(hash))) {
+            buffer = null;
+            return;
+        }
+        getResponse().setContentLength(size);
+        buffer.writeTo(getResponse().getOutputStream());
+        buffer = null;
+    }
+
+    @Override
+    public String getPrecompressedEncoding() {
+        if (finished || !(getResponse() instanceof VincentPrecompressedResponse)) {
+            return null;
+        }
+        return ((VincentPrecompressedResponse) getResponse()).getPrecompressedEncoding();
+    }
+
+    @Override
+    public boolean writePrecompressed(byte[] raw, byte[] compressed) throws IOException {
+        if (finished || writer != null || (buffer != null && buffer.size() > 0)
+                || !(getResponse() instanceof VincentPrecompressedResponse)) {
+            return false;
+        }
+        if (!passthrough && getStatus() == SC_OK && raw.length <= maxSize) {
+            //和 finish() 一样按未压缩的内容计算，压缩与否ETag都相同
+            long hash = VincentHttpCaching.hash(VincentHttpCaching.hashSeed(), raw, 0, raw.length);
+            if (VincentHttpCaching.checkNotModified(request, (HttpServletResponse) getResponse(), VincentHttpCaching.weakETag(hash))) {
+                finished = true;
+                buffer = null;
+                return true;
+            }
+        }
+        //之后的输出（包括调用方按普通方式输出）直接交给内层
+        startPassthrough();
+        return ((VincentPrecompressedResponse) getResponse()).writePrecompressed(raw, compressed);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        if (outputStream == null) {
+            outputStream = new BufferingOutputStream();
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            outputStream = new BufferingOutputStream();
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (passthrough) {
+            super.setContentLengthLong(len);
+        } else {
+            this.contentLength = len;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (interceptHeader(name, value)) {
+            return;
+        }
+        super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (interceptHeader(name, value)) {
+            return;
+        }
+        super.addHeader(name, value);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        passthroughWithoutBody();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        passthroughWithoutBody();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        passthroughWithoutBody();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        //缓存阶段不提交，否则就没法再返回304
+        if (passthrough) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (buffer != null) {
+            buffer.reset();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if (buffer != null) {
+            buffer.reset();
+        }
+        contentLength = -1;
+    }
+
+    private boolean interceptHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value.trim()));
+            return true;
+        }
+        if ("ETag".equalsIgnoreCase(name) && !passthrough) {
+            //已经有ETag（比如视图根据模板和模型算好了），不再按内容计算
+            try {
+                startPassthrough();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return false;
+    }
+
+    private void passthroughWithoutBody() {
+        buffer = null;
+        passthrough = true;
+    }
+
+    private void startPassthrough() throws IOException {
+        passthrough = true;
+        if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+        if (buffer != null && buffer.size() > 0) {
+            buffer.writeTo(getResponse().getOutputStream());
+        }
+        buffer = null;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (passthrough) {
+            getResponse().getOutputStream().write(b, off, len);
+            return;
+        }
+        if (buffer == null) {
+            buffer = new ContentBuffer(Math.max(256, Math.min(len, maxSize)));
+        }
+        if (buffer.size() + len > maxSize) {
+            startPassthrough();
+            getResponse().getOutputStream().write(b, off, len);
+            return;
+        }
+        buffer.write(b, off, len);
+    }
+
+    //直接读内部数组计算哈希，不再复制一份
+    private static class ContentBuffer extends ByteArrayOutputStream {
+
+        private ContentBuffer(int size) {
+            super(size);
+        }
+
+        private byte[] array() {
+            return buf;
+        }
+    }
+
+    private class BufferingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            VincentETagResponse.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            VincentETagResponse.this.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (passthrough) {
+                getResponse().getOutputStream().flush();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("Non-blocking IO is not supported on an ETag response");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 限流的异常堆栈日志
+ * 同一种异常（异常类 + 抛出位置）在 interval 内只打印一次完整堆栈，其余的只计数，
+ * 下次打印时带上被省略的次数，故障期间日志不会拖慢请求
+ * @author vincent
+ */
+public class VincentErrorLogger {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 10000;
+
+    //最多跟踪的异常种类，超过时清空
+    private static final int MAX_TRACKED = 1024;
+
+    private final long intervalNanos;
+    private final Map<String, Window> windows = new ConcurrentHashMap<String, Window>();
+
+    public VincentErrorLogger(long intervalMillis) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    public void log(String message, Throwable ex) {
+        if (intervalNanos <= 0) {
+            System.err.println(message);
+            ex.printStackTrace();
+            return;
+        }
+        String key = key(ex);
+        Window window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= MAX_TRACKED) {
+                windows.clear();
+            }
+            window = new Window();
+            Window existing = windows.putIfAbsent(key, window);
+            if (existing != null) {
+                window = existing;
+            }
+        }
+
+        long now = System.nanoTime();
+        long next = window.nextLogTime.get();
+        if (now - next < 0 || !window.nextLogTime.compareAndSet(next, now + intervalNanos)) {
+            window.suppressed.incrementAndGet();
+            return;
+        }
+        long suppressed = window.suppressed.getAndSet(0);
+        System.err.println(suppressed > 0
+                ? message + " (" + suppressed + " similar errors suppressed)"
+                : message);
+        ex.printStackTrace();
+    }
+
+    private static String key(Throwable ex) {
+        StackTraceElement[] stackTrace = ex.getStackTrace();
+        if (stackTrace.length == 0) {
+            return ex.getClass().getName();
+        }
+        return ex.getClass().getName() + "@" + stackTrace[0];
+    }
+
+    private static class Window {
+        private final AtomicLong nextLogTime = new AtomicLong(System.nanoTime());
+        private final AtomicLong suppressed = new AtomicLong();
+    }
+}
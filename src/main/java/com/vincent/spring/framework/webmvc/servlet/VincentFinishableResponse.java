@@ -0,0 +1,13 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.io.IOException;
+
+/**
+ * 需要在请求结束时输出剩余内容的 response 包装（压缩、ETag）
+ * 由分发器从外到内依次调用 finish
+ * @author vincent
+ */
+public interface VincentFinishableResponse {
+
+    void finish() throws IOException;
+}
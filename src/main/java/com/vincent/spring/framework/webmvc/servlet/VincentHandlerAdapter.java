@@ -1,101 +1,82 @@
 package com.vincent.spring.framework.webmvc.servlet;
 
-import com.vincent.spring.framework.annotation.VincentRequestParam;
+import com.vincent.spring.framework.webmvc.json.VincentJsonSerializer;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.lang.annotation.Annotation;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
 public class VincentHandlerAdapter {
 
     public VincentModelAndView handler(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler) throws Exception{
+        return handleReturnValue(handle(req, resp, handler), resp);
+    }
 
-        //保存形参列表
-        //将参数名称和参数的位置，这种关系保存起来
-        Map<String,Integer> paramIndexMapping = new HashMap<String, Integer>();
-
-        //通过运行时的状态去拿到你
-        Annotation[] [] pa = handler.getMethod().getParameterAnnotations();
-        for (int i = 0; i < pa.length ; i ++) {
-            for(Annotation a : pa[i]){
-                if(a instanceof VincentRequestParam){
-                    String paramName = ((VincentRequestParam) a).value();
-                    if(!"".equals(paramName.trim())){
-//                        String value = Arrays.toString(params.get(paramName))
-//                                .replaceAll("\\[|\\]","")
-//                                .replaceAll("\\s+",",");
-//                        paramValues[i] = value;
-                        paramIndexMapping.put(paramName,i);
-                    }
-                }
-            }
-        }
-
-        //初始化一下
-        Class<?> [] paramTypes = handler.getMethod().getParameterTypes();
-        for (int i = 0; i < paramTypes.length; i++) {
-            Class<?> paramterType = paramTypes[i];
-            if(paramterType == HttpServletRequest.class || paramterType == HttpServletResponse.class){
-                paramIndexMapping.put(paramterType.getName(),i);
-            }
-        }
+    /**
+     * 绑定参数并调用Handler，返回方法的原始返回值
+     * 返回值可能是 CompletionStage / Future，由分发器决定等待还是异步完成
+     */
+    public Object handle(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler) throws Exception{
 
+        //形参列表在启动时已经解析好，这里只按顺序取值
+        VincentMethodParameter[] parameters = handler.getMethodParameters();
 
         //去拼接实参列表
         //http://localhost/web/query?name=Tom&Cat
-        Map<String,String[]> params = req.getParameterMap();
-
-        Object [] paramValues = new Object[paramTypes.length];
-
-        for (Map.Entry<String,String[]> param : params.entrySet()) {
-            String value = Arrays.toString(params.get(param.getKey()))
-                    .replaceAll("\\[|\\]","")
-                    .replaceAll("\\s+",",");
-
-            if(!paramIndexMapping.containsKey(param.getKey())){continue;}
-
-            int index = paramIndexMapping.get(param.getKey());
-
-            //允许自定义的类型转换器Converter
-            paramValues[index] = castStringValue(value,paramTypes[index]);
+        Object [] paramValues = new Object[parameters.length];
+
+        for (int i = 0; i < parameters.length; i++) {
+            VincentMethodParameter parameter = parameters[i];
+            switch (parameter.getKind()) {
+                case REQUEST:
+                    paramValues[i] = req;
+                    break;
+                case RESPONSE:
+                    paramValues[i] = resp;
+                    break;
+                case REQUEST_PARAM:
+                    //只取Handler声明了的参数，值原样交给转换器
+                    String[] values = req.getParameterValues(parameter.getName());
+                    if (values != null && values.length > 0) {
+                        paramValues[i] = convert(parameter, values, null);
+                    } else if (parameter.getDefaultValue() != null) {
+                        paramValues[i] = convert(parameter, null, parameter.getDefaultValue());
+                    } else if (parameter.isRequired()) {
+                        //交给异常解析器返回400
+                        throw new VincentRequestBindingException(
+                                "Required parameter '" + parameter.getName() + "' is not present");
+                    } else {
+                        paramValues[i] = parameter.getEmptyValue();
+                    }
+                    break;
+                default:
+                    break;
+            }
         }
 
-        if(paramIndexMapping.containsKey(HttpServletRequest.class.getName())){
-            int index = paramIndexMapping.get(HttpServletRequest.class.getName());
-            paramValues[index] = req;
-        }
+        return handler.getInvoker().invoke(paramValues);
+    }
 
-        if(paramIndexMapping.containsKey(HttpServletResponse.class.getName())){
-            int index = paramIndexMapping.get(HttpServletResponse.class.getName());
-            paramValues[index] = resp;
+    private Object convert(VincentMethodParameter parameter, String[] values, String defaultValue) {
+        try {
+            return values != null ? parameter.convert(values) : parameter.convert(defaultValue);
+        } catch (Exception e) {
+            throw new VincentRequestBindingException("Failed to convert parameter '" + parameter.getName() + "' to "
+                    + parameter.getType().getSimpleName() + " : " + e.getMessage());
         }
+    }
 
-        Object result = handler.getMethod().invoke(handler.getController(),paramValues);
-        if(result == null || result instanceof Void){return null;}
+    /**
+     * 处理Handler的返回值（或者异步结果完成后的值）
+     * VincentModelAndView 交给视图解析；其它非null的返回值（POJO、Map、集合、字符串等）按JSON直接写到response，返回null
+     */
+    public VincentModelAndView handleReturnValue(Object result, HttpServletResponse resp) throws IOException {
+        if(result == null){return null;}
 
-        boolean isModelAndView = handler.getMethod().getReturnType() == VincentModelAndView.class;
-        if(isModelAndView){
+        if(result instanceof VincentModelAndView){
             return (VincentModelAndView)result;
         }
+        VincentJsonSerializer.getSharedInstance().write(result, resp);
         return null;
     }
-
-    private Object castStringValue(String value, Class<?> paramType) {
-        if(String.class == paramType){
-            return value;
-        }else if(Integer.class == paramType){
-            return Integer.valueOf(value);
-        }else if(Double.class == paramType){
-            return Double.valueOf(value);
-        }else {
-            if(value != null){
-                return value;
-            }
-            return null;
-        }
-
-    }
 }
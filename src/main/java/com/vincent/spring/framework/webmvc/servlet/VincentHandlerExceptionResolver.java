@@ -0,0 +1,18 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handler异常解析器
+ * 分发器按顺序调用，第一个返回非null的结果生效，解析器负责设置响应状态码
+ * 容器里实现了该接口的Bean排在内置的 VincentStatusExceptionResolver 之前
+ * @author vincent
+ */
+public interface VincentHandlerExceptionResolver {
+
+    /**
+     * @return 要渲染的视图，视图名为null表示已经自己输出了响应；返回null表示交给下一个解析器
+     */
+    VincentModelAndView resolveException(HttpServletRequest req, HttpServletResponse resp, Throwable ex);
+}
@@ -0,0 +1,67 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步分发时执行Handler的线程池
+ * JDK 21+ 默认每个任务一个虚拟线程；更低版本的JDK用有界线程池，队列满了直接拒绝，由分发器返回503
+ * @author vincent
+ */
+public class VincentHandlerExecutors {
+
+    public static final String TYPE_AUTO = "auto";
+    public static final String TYPE_VIRTUAL = "virtual";
+    public static final String TYPE_POOL = "pool";
+
+    /**
+     * @param type      auto、virtual 或 pool
+     * @param poolSize  线程池大小，type 为 virtual 时忽略
+     * @param queueSize 等待队列长度，type 为 virtual 时忽略
+     * @param errorLogger 创建虚拟线程池失败时记录异常
+     */
+    public static ExecutorService create(String type, int poolSize, int queueSize, VincentErrorLogger errorLogger) {
+        if (TYPE_VIRTUAL.equals(type) || TYPE_AUTO.equals(type)) {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor(errorLogger);
+            if (executor != null) {
+                return executor;
+            }
+            if (TYPE_VIRTUAL.equals(type)) {
+                throw new IllegalStateException("Virtual threads require JDK 21+");
+            }
+        } else if (!TYPE_POOL.equals(type)) {
+            throw new IllegalArgumentException("Unknown asyncExecutor : " + type);
+        }
+        return newBoundedPool(poolSize, queueSize);
+    }
+
+    /**
+     * 编译目标是1.8，只能通过反射调用 Executors.newVirtualThreadPerTaskExecutor()
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(VincentErrorLogger errorLogger) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            errorLogger.log("Failed to create virtual thread executor", e);
+            return null;
+        }
+    }
+
+    private static ExecutorService newBoundedPool(int poolSize, int queueSize) {
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "vincent-handler-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
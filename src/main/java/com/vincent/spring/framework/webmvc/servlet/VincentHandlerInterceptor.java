@@ -0,0 +1,35 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handler拦截器，用来处理登录校验、租户、审计这类和具体Controller无关的逻辑
+ * 容器里实现了该接口的Bean都会注册，拦截哪些路由由 @VincentInterceptorMapping 指定
+ * 每个路由适用的拦截器在启动时确定，保存在 VincentHandlerMapping 里；带通配符的路由按请求路径再匹配一次
+ * @author vincent
+ */
+public interface VincentHandlerInterceptor {
+
+    /**
+     * 在HTTP缓存检查、响应缓存和Handler调用之前执行
+     * @return false 表示拦截器已经输出了响应（比如401），不再继续处理
+     */
+    default boolean preHandle(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler) throws Exception {
+        return true;
+    }
+
+    /**
+     * Handler调用之后、视图渲染之前执行；返回值已经按JSON输出、或者没有视图时 mv 为null
+     * 命中缓存（304、响应缓存）时Handler没有调用，也不会执行
+     */
+    default void postHandle(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler, VincentModelAndView mv) throws Exception {
+    }
+
+    /**
+     * 请求处理完之后执行，包括异步结果完成之后；只有 preHandle 返回了true的拦截器才会执行
+     * @param ex 处理过程中的异常，没有异常时为null
+     */
+    default void afterCompletion(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler, Throwable ex) throws Exception {
+    }
+}
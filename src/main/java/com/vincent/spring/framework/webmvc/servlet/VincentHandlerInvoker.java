@@ -0,0 +1,16 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+/**
+ * 调用Handler方法
+ * 启动时和Controller实例、Method绑定好，请求时只需要传实参
+ * @author vincent
+ */
+public interface VincentHandlerInvoker {
+
+    /**
+     * @param args 按形参顺序排好的实参
+     * @return 方法返回值，void方法返回null
+     * @throws Exception Handler方法本身抛出的异常，不再包装成InvocationTargetException
+     */
+    Object invoke(Object[] args) throws Exception;
+}
@@ -1,26 +1,79 @@
 package com.vincent.spring.framework.webmvc.servlet;
 
+import com.vincent.spring.framework.annotation.VincentCacheControl;
+import com.vincent.spring.framework.annotation.VincentCacheable;
+import com.vincent.spring.framework.core.convert.VincentConversionService;
+import com.vincent.spring.framework.webmvc.limit.VincentConcurrencyLimiter;
+import com.vincent.spring.framework.webmvc.metrics.VincentRouteMetrics;
+
 import java.lang.reflect.Method;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 public class VincentHandlerMapping {
 
-    private Pattern pattern;     //URL
+    private static final VincentHandlerInterceptor[] NO_INTERCEPTORS = new VincentHandlerInterceptor[0];
+
+    private String url;          //配置的URL，如 /web/add*.json
     private Method method;  //对应的Method
     private Object controller;//Method对应的实例对象
+    private VincentMethodParameter[] methodParameters;//启动时解析好的形参列表
+    private VincentHandlerInvoker invoker;//启动时绑定好的调用器
+    private VincentRouteMetrics metrics;//路由统计，关闭统计时为null
+    private VincentConversionService conversionService;//解析形参转换器用
+    private VincentCacheControl cacheControl;//HTTP缓存策略，没有配置时为null
+    private String cacheControlHeader;//启动时生成好的 Cache-Control 值
+    private VincentCacheable cacheable;//响应缓存配置，没有配置时为null
+    private String[] cacheKeyParams = new String[0];//参与缓存key的请求参数
+    private VincentHandlerInterceptor[] interceptors = NO_INTERCEPTORS;//启动时确定的拦截器，按执行顺序排好
+    private VincentConcurrencyLimiter concurrencyLimiter;//并发限制，没有限制时为null
 
-    public VincentHandlerMapping(Pattern pattern, Object controller, Method method) {
-        this.pattern = pattern;
+    public VincentHandlerMapping(String url, Object controller, Method method) {
+        this(url, controller, method, VincentConversionService.getSharedInstance());
+    }
+
+    public VincentHandlerMapping(String url, Object controller, Method method, VincentConversionService conversionService) {
+        this.url = url;
         this.method = method;
         this.controller = controller;
+        this.conversionService = conversionService;
+        this.methodParameters = method == null ? new VincentMethodParameter[0] : VincentMethodParameter.forMethod(method, conversionService);
+        this.invoker = method == null ? null : new VincentReflectiveHandlerInvoker(controller, method);
+        resolveCaching();
     }
 
-    public Pattern getPattern() {
-        return pattern;
+    //方法上的注解优先于类上的；同时解析响应缓存的配置
+    private void resolveCaching() {
+        VincentCacheControl annotation = method == null ? null : method.getAnnotation(VincentCacheControl.class);
+        if (annotation == null && controller != null) {
+            annotation = controller.getClass().getAnnotation(VincentCacheControl.class);
+        }
+        this.cacheControl = annotation;
+        this.cacheControlHeader = annotation == null ? null : VincentHttpCaching.cacheControlValue(annotation);
+
+        this.cacheable = method == null ? null : method.getAnnotation(VincentCacheable.class);
+        if (cacheable == null) {
+            this.cacheKeyParams = new String[0];
+        } else if (cacheable.params().length > 0) {
+            this.cacheKeyParams = cacheable.params().clone();
+        } else {
+            //默认使用方法声明的所有请求参数
+            List<String> names = new ArrayList<String>();
+            for (VincentMethodParameter parameter : methodParameters) {
+                if (parameter.getKind() == VincentMethodParameter.Kind.REQUEST_PARAM) {
+                    names.add(parameter.getName());
+                }
+            }
+            this.cacheKeyParams = names.toArray(new String[names.size()]);
+        }
     }
 
-    public void setPattern(Pattern pattern) {
-        this.pattern = pattern;
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
     }
 
     public Method getMethod() {
@@ -29,6 +82,13 @@ public class VincentHandlerMapping {
 
     public void setMethod(Method method) {
         this.method = method;
+        this.methodParameters = VincentMethodParameter.forMethod(method, conversionService);
+        this.invoker = new VincentReflectiveHandlerInvoker(controller, method);
+        resolveCaching();
+    }
+
+    public VincentMethodParameter[] getMethodParameters() {
+        return methodParameters;
     }
 
     public Object getController() {
@@ -37,5 +97,55 @@ public class VincentHandlerMapping {
 
     public void setController(Object controller) {
         this.controller = controller;
+        this.invoker = method == null ? null : new VincentReflectiveHandlerInvoker(controller, method);
+        resolveCaching();
+    }
+
+    public VincentHandlerInvoker getInvoker() {
+        return invoker;
+    }
+
+    public void setInvoker(VincentHandlerInvoker invoker) {
+        this.invoker = invoker;
+    }
+
+    public VincentCacheControl getCacheControl() {
+        return cacheControl;
+    }
+
+    public String getCacheControlHeader() {
+        return cacheControlHeader;
+    }
+
+    public VincentCacheable getCacheable() {
+        return cacheable;
+    }
+
+    public String[] getCacheKeyParams() {
+        return cacheKeyParams;
+    }
+
+    public VincentHandlerInterceptor[] getInterceptors() {
+        return interceptors;
+    }
+
+    public void setInterceptors(VincentHandlerInterceptor[] interceptors) {
+        this.interceptors = interceptors.length == 0 ? NO_INTERCEPTORS : interceptors;
+    }
+
+    public VincentConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public void setConcurrencyLimiter(VincentConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public VincentRouteMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(VincentRouteMetrics metrics) {
+        this.metrics = metrics;
     }
 }
@@ -0,0 +1,179 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import com.vincent.spring.framework.annotation.VincentCacheControl;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * HTTP 条件请求（ETag / Last-Modified -> 304）
+ * ETag 都是弱ETag（W/"..."），同一个内容压缩和不压缩时使用同一个ETag
+ * @author vincent
+ */
+public class VincentHttpCaching {
+
+    public static final int DEFAULT_ETAG_MAX_SIZE = 256 * 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int etagMaxSize;
+
+    public VincentHttpCaching(int etagMaxSize) {
+        this.etagMaxSize = etagMaxSize;
+    }
+
+    /**
+     * GET / HEAD 请求的响应包装成 VincentETagResponse，根据输出内容计算ETag
+     */
+    public HttpServletResponse wrap(HttpServletRequest req, HttpServletResponse resp) {
+        String method = req.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return resp;
+        }
+        return new VincentETagResponse(req, resp, etagMaxSize);
+    }
+
+    /**
+     * 设置ETag，与 If-None-Match 匹配时返回304
+     * @return true 表示已经返回304，不需要再输出内容
+     */
+    public static boolean checkNotModified(HttpServletRequest req, HttpServletResponse resp, String etag) {
+        resp.setHeader("ETag", etag);
+        if (etagMatches(req.getHeader("If-None-Match"), etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 设置Last-Modified，没有 If-None-Match 且 If-Modified-Since 不早于 lastModified 时返回304
+     * @return true 表示已经返回304，不需要再输出内容
+     */
+    public static boolean checkNotModified(HttpServletRequest req, HttpServletResponse resp, long lastModified) {
+        if (lastModified < 0) {
+            return false;
+        }
+        resp.setDateHeader("Last-Modified", lastModified);
+        //有 If-None-Match 时以ETag为准
+        if (req.getHeader("If-None-Match") != null) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = req.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        //HTTP 日期只精确到秒
+        if (ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 启动时把注解转换成 Cache-Control 头的值，没有任何指令时返回null
+     */
+    public static String cacheControlValue(VincentCacheControl cacheControl) {
+        StringBuilder sb = new StringBuilder();
+        if (cacheControl.noStore()) {
+            append(sb, "no-store");
+        }
+        if (cacheControl.noCache()) {
+            append(sb, "no-cache");
+        }
+        if (cacheControl.cachePrivate()) {
+            append(sb, "private");
+        }
+        if (cacheControl.cachePublic()) {
+            append(sb, "public");
+        }
+        if (cacheControl.maxAge() >= 0) {
+            append(sb, "max-age=" + cacheControl.maxAge());
+        }
+        if (cacheControl.mustRevalidate()) {
+            append(sb, "must-revalidate");
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String directive) {
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        sb.append(directive);
+    }
+
+    /**
+     * If-None-Match 里的任意一个ETag和 etag 弱比较相等，或者是 *
+     */
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        String opaque = opaqueTag(etag, 0, etag.length());
+        int from = 0;
+        while (from < ifNoneMatch.length()) {
+            int comma = ifNoneMatch.indexOf(',', from);
+            int end = comma < 0 ? ifNoneMatch.length() : comma;
+            int start = from;
+            while (start < end && ifNoneMatch.charAt(start) == ' ') {
+                start++;
+            }
+            int stop = end;
+            while (stop > start && ifNoneMatch.charAt(stop - 1) == ' ') {
+                stop--;
+            }
+            if (stop - start == 1 && ifNoneMatch.charAt(start) == '*') {
+                return true;
+            }
+            String candidate = opaqueTag(ifNoneMatch, start, stop);
+            if (candidate.equals(opaque)) {
+                return true;
+            }
+            from = end + 1;
+        }
+        return false;
+    }
+
+    //去掉弱ETag的 W/ 前缀
+    private static String opaqueTag(String value, int start, int end) {
+        if (end - start > 2 && value.charAt(start) == 'W' && value.charAt(start + 1) == '/') {
+            start += 2;
+        }
+        return value.substring(start, end);
+    }
+
+    public static String weakETag(long hash) {
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * FNV-1a 64位，用来计算内容的ETag，不需要加密强度
+     */
+    public static long hash(long hash, byte[] bytes, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static long hash(long hash, CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static long hashSeed() {
+        return FNV_OFFSET;
+    }
+}
@@ -0,0 +1,16 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Controller实现这个接口后，@VincentCacheControl(lastModified = true) 的方法使用它返回的时间
+ * 在调用Handler之前调用，应该足够便宜
+ * @author vincent
+ */
+public interface VincentLastModified {
+
+    /**
+     * @return 毫秒时间戳，小于0表示不知道，这时总是调用Handler
+     */
+    long getLastModified(HttpServletRequest request);
+}
@@ -0,0 +1,38 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * 基于 MethodHandle 的调用方式
+ * 启动时把 Method 转成绑定了Controller实例、展开Object[]实参的 MethodHandle，
+ * 调用走 invokeExact，没有反射的访问检查和异常包装，JIT可以内联到Controller方法里
+ * @author vincent
+ */
+public class VincentMethodHandleInvoker implements VincentHandlerInvoker {
+
+    private final MethodHandle handle;
+
+    public VincentMethodHandleInvoker(Object controller, Method method) throws IllegalAccessException {
+        method.setAccessible(true);
+        this.handle = MethodHandles.lookup().unreflect(method)
+                .bindTo(controller)
+                .asSpreader(Object[].class, method.getParameterTypes().length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    @Override
+    public Object invoke(Object[] args) throws Exception {
+        try {
+            return (Object) handle.invokeExact(args);
+        } catch (Exception e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
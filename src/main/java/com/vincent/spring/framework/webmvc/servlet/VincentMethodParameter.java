@@ -0,0 +1,179 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import com.vincent.spring.framework.annotation.VincentRequestParam;
+import com.vincent.spring.framework.core.convert.VincentConversionService;
+import com.vincent.spring.framework.core.convert.VincentConverter;
+import com.vincent.spring.framework.core.convert.VincentMultiValueConverter;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+/**
+ * Handler方法的一个形参
+ * 启动时解析好参数来源（request、response、请求参数）、必填、默认值和类型转换器，请求时不再做反射
+ * @author vincent
+ */
+public class VincentMethodParameter {
+
+    public enum Kind {
+        REQUEST,
+        RESPONSE,
+        REQUEST_PARAM,
+        //无法解析的参数，传null
+        UNRESOLVED
+    }
+
+    private final int index;
+    private final Class<?> type;
+    private final Kind kind;
+    private final String name;
+    private final boolean required;
+    private final String defaultValue;
+    private final VincentConverter<?> converter;
+    //数组、集合类型，直接接收所有值
+    private final VincentMultiValueConverter<?> multiValueConverter;
+    //基本类型没有值时使用的默认值
+    private final Object emptyValue;
+
+    public VincentMethodParameter(int index, Class<?> type, Kind kind, String name, boolean required, String defaultValue) {
+        this(index, type, kind, name, required, defaultValue, null);
+    }
+
+    public VincentMethodParameter(int index, Class<?> type, Kind kind, String name, boolean required, String defaultValue,
+                                  VincentConverter<?> converter) {
+        this.index = index;
+        this.type = type;
+        this.kind = kind;
+        this.name = name;
+        this.required = required;
+        this.defaultValue = defaultValue;
+        this.converter = converter;
+        this.multiValueConverter = converter instanceof VincentMultiValueConverter ? (VincentMultiValueConverter<?>) converter : null;
+        this.emptyValue = VincentConversionService.emptyValue(type);
+    }
+
+    /**
+     * 解析方法的所有形参，使用只包含内置转换器的ConversionService
+     */
+    public static VincentMethodParameter[] forMethod(Method method) {
+        return forMethod(method, VincentConversionService.getSharedInstance());
+    }
+
+    /**
+     * 解析方法的所有形参，只在启动时调用
+     * @throws IllegalStateException 请求参数的类型无法转换
+     */
+    public static VincentMethodParameter[] forMethod(Method method, VincentConversionService conversionService) {
+        Annotation[][] pa = method.getParameterAnnotations();
+        Class<?>[] paramTypes = method.getParameterTypes();
+        Type[] genericTypes = method.getGenericParameterTypes();
+        VincentMethodParameter[] parameters = new VincentMethodParameter[paramTypes.length];
+
+        for (int i = 0; i < paramTypes.length; i++) {
+            Class<?> paramType = paramTypes[i];
+            VincentRequestParam requestParam = null;
+            for (Annotation a : pa[i]) {
+                if (a instanceof VincentRequestParam) {
+                    requestParam = (VincentRequestParam) a;
+                }
+            }
+
+            if (requestParam != null && !"".equals(requestParam.value().trim())) {
+                boolean hasDefault = !VincentRequestParam.DEFAULT_NONE.equals(requestParam.defaultValue());
+                //内部类、lambda 的合成参数会让两个数组长度不一致，这时退回到 Class
+                Type genericType = genericTypes.length == paramTypes.length ? genericTypes[i] : paramType;
+                VincentConverter<?> converter;
+                try {
+                    converter = conversionService.getConverter(genericType);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Unsupported type of parameter '" + requestParam.value().trim()
+                            + "' in " + method + " : " + e.getMessage(), e);
+                }
+                parameters[i] = new VincentMethodParameter(i, paramType, Kind.REQUEST_PARAM,
+                        requestParam.value().trim(),
+                        requestParam.required() && !hasDefault,
+                        hasDefault ? requestParam.defaultValue() : null,
+                        converter);
+            } else if (ServletRequest.class.isAssignableFrom(paramType) && paramType.isAssignableFrom(HttpServletRequest.class)) {
+                parameters[i] = new VincentMethodParameter(i, paramType, Kind.REQUEST, null, false, null);
+            } else if (ServletResponse.class.isAssignableFrom(paramType) && paramType.isAssignableFrom(HttpServletResponse.class)) {
+                parameters[i] = new VincentMethodParameter(i, paramType, Kind.RESPONSE, null, false, null);
+            } else {
+                parameters[i] = new VincentMethodParameter(i, paramType, Kind.UNRESOLVED, null, false, null);
+            }
+        }
+        return parameters;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * 把请求里的参数值转换成形参类型
+     * 数组、集合接收全部的值；String 在有多个值时用逗号拼接；其他类型只取第一个值
+     */
+    public Object convert(String[] values) throws Exception {
+        Object converted;
+        if (multiValueConverter != null) {
+            converted = values.length == 1 ? multiValueConverter.convert(values[0]) : multiValueConverter.convert(values);
+        } else if (values.length > 1 && type == String.class) {
+            converted = join(values);
+        } else {
+            converted = converter.convert(values[0]);
+        }
+        return converted == null ? emptyValue : converted;
+    }
+
+    /**
+     * 转换默认值，或者只有一个值的参数
+     */
+    public Object convert(String value) throws Exception {
+        Object converted = converter.convert(value);
+        return converted == null ? emptyValue : converted;
+    }
+
+    private static String join(String[] values) {
+        StringBuilder sb = new StringBuilder(values.length * 16);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    public VincentConverter<?> getConverter() {
+        return converter;
+    }
+
+    public Object getEmptyValue() {
+        return emptyValue;
+    }
+}
@@ -0,0 +1,64 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 带通配符的路由（如 /web/add*.json、/admin/**）上的拦截器
+ * 这类路由对应很多实际路径，启动时无法确定拦截器的 value / exclude 是否适用，
+ * 所以按每个请求的实际路径匹配，不匹配时三个方法都直接跳过
+ * 纯文本路由的拦截器仍然在启动时确定，不经过这个类
+ * @author vincent
+ */
+class VincentPathMatchingInterceptor implements VincentHandlerInterceptor {
+
+    private final VincentHandlerInterceptor delegate;
+    private final VincentPathPattern[] includes;
+    private final VincentPathPattern[] excludes;
+
+    VincentPathMatchingInterceptor(VincentHandlerInterceptor delegate, VincentPathPattern[] includes, VincentPathPattern[] excludes) {
+        this.delegate = delegate;
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler) throws Exception {
+        return !matches(req) || delegate.preHandle(req, resp, handler);
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler, VincentModelAndView mv) throws Exception {
+        if (matches(req)) {
+            delegate.postHandle(req, resp, handler, mv);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest req, HttpServletResponse resp, VincentHandlerMapping handler, Throwable ex) throws Exception {
+        if (matches(req)) {
+            delegate.afterCompletion(req, resp, handler, ex);
+        }
+    }
+
+    //同一个请求的路径不变，三次匹配的结果一致
+    private boolean matches(HttpServletRequest req) {
+        String path = VincentDispatcherServlet.lookupPath(req);
+        for (VincentPathPattern exclude : excludes) {
+            if (exclude.matches(path)) {
+                return false;
+            }
+        }
+        for (VincentPathPattern include : includes) {
+            if (include.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return delegate.getClass().getName();
+    }
+}
@@ -0,0 +1,46 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.util.regex.Pattern;
+
+/**
+ * 路径模式，* 匹配一段内的任意字符，** 匹配任意多段（包括0段）
+ * 用来确定每个路由的拦截器：纯文本路由在启动时匹配，带通配符的路由按请求路径匹配
+ * 请求时的路由查找用 VincentRouteIndex
+ * @author vincent
+ */
+public class VincentPathPattern {
+
+    private final String pattern;
+    private final Pattern regex;
+
+    public VincentPathPattern(String pattern) {
+        this.pattern = ("/" + pattern.trim()).replaceAll("/+", "/");
+        StringBuilder regex = new StringBuilder();
+        for (String segment : this.pattern.substring(1).split("/", -1)) {
+            if ("**".equals(segment)) {
+                regex.append("(/.*)?");
+                continue;
+            }
+            regex.append('/');
+            String[] parts = segment.split("\\*", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append("[^/]*");
+                }
+                if (parts[i].length() > 0) {
+                    regex.append(Pattern.quote(parts[i]));
+                }
+            }
+        }
+        this.regex = Pattern.compile(regex.toString());
+    }
+
+    public boolean matches(String path) {
+        return regex.matcher(path).matches();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
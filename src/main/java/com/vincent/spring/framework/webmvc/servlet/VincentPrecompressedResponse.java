@@ -0,0 +1,23 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.io.IOException;
+
+/**
+ * 可以直接输出压缩好的内容的 response 包装（压缩，以及包在它外面的ETag、异步）
+ * 外层包装处理好自己的逻辑后交给内层，直到压缩的 response
+ * @author vincent
+ */
+public interface VincentPrecompressedResponse {
+
+    /**
+     * @return 需要的压缩格式，为null表示当前不能使用压缩好的内容
+     */
+    String getPrecompressedEncoding();
+
+    /**
+     * @param raw 未压缩的内容
+     * @param compressed 按 getPrecompressedEncoding() 压缩好的内容
+     * @return false 表示当前不能使用压缩好的内容，调用方应当按普通方式输出
+     */
+    boolean writePrecompressed(byte[] raw, byte[] compressed) throws IOException;
+}
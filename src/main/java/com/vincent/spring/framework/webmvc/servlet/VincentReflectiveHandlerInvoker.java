@@ -0,0 +1,37 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 基于 Method.invoke 的调用方式
+ * @author vincent
+ */
+public class VincentReflectiveHandlerInvoker implements VincentHandlerInvoker {
+
+    private final Object controller;
+    private final Method method;
+
+    public VincentReflectiveHandlerInvoker(Object controller, Method method) {
+        this.controller = controller;
+        this.method = method;
+        //跳过每次调用时的访问检查
+        this.method.setAccessible(true);
+    }
+
+    @Override
+    public Object invoke(Object[] args) throws Exception {
+        try {
+            return method.invoke(controller, args);
+        } catch (InvocationTargetException e) {
+            Throwable target = e.getTargetException();
+            if (target instanceof Exception) {
+                throw (Exception) target;
+            }
+            if (target instanceof Error) {
+                throw (Error) target;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import com.vincent.spring.framework.annotation.VincentResponseStatus;
+
+/**
+ * 请求参数缺失或者无法转换
+ * 属于客户端错误，不需要堆栈，创建时不填充堆栈，出错的请求不会比正常请求更贵
+ * @author vincent
+ */
+@VincentResponseStatus(400)
+public class VincentRequestBindingException extends RuntimeException {
+
+    public VincentRequestBindingException(String message) {
+        super(message, null, false, false);
+    }
+}
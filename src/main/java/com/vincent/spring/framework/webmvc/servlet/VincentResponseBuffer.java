@@ -0,0 +1,144 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 响应体的字节缓冲
+ * 静态内容直接拷贝预先编码好的 byte[]，动态内容在这里直接按 UTF-8 编码成字节，
+ * 不经过 Writer，也不产生中间的 String/byte[]。写完之后长度已知，可以设置 Content-Length
+ * 缓冲放在一个有上限的池里复用，不按线程保存（虚拟线程每个请求一个，ThreadLocal 起不到复用的作用）；
+ * 池空时新建，池满或者超过 MAX_RETAINED_CAPACITY 的缓冲用完后丢弃，避免长期占用内存
+ * @author vincent
+ */
+public class VincentResponseBuffer {
+
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final BlockingQueue<VincentResponseBuffer> POOL =
+            new ArrayBlockingQueue<VincentResponseBuffer>(Runtime.getRuntime().availableProcessors() * 4);
+
+    private byte[] buf;
+    private int count;
+
+    public VincentResponseBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public VincentResponseBuffer(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    /**
+     * 从池里取一个空的缓冲，用完之后必须 release()，而且只能 release() 一次
+     */
+    public static VincentResponseBuffer acquire() {
+        VincentResponseBuffer buffer = POOL.poll();
+        return buffer == null ? new VincentResponseBuffer() : buffer;
+    }
+
+    /**
+     * 用完之后归还，太大的缓冲不保留；之后不能再使用
+     */
+    public void release() {
+        count = 0;
+        if (buf.length <= MAX_RETAINED_CAPACITY) {
+            POOL.offer(this);
+        }
+    }
+
+    public void write(byte[] bytes) {
+        ensureCapacity(count + bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    public void write(byte b) {
+        ensureCapacity(count + 1);
+        buf[count++] = b;
+    }
+
+    /**
+     * 把字符按 UTF-8 编码写入，ASCII 字符一个字节，不分配中间对象
+     */
+    public void writeUtf8(CharSequence s) {
+        writeUtf8(s, 0, s.length());
+    }
+
+    public void writeUtf8(CharSequence s, int start, int end) {
+        ensureCapacity(count + end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (count == buf.length) {
+                    ensureCapacity(count + 1);
+                }
+                buf[count++] = (byte) c;
+            } else if (c < 0x800) {
+                ensureCapacity(count + 2);
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                ensureCapacity(count + 4);
+                buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                //不成对的代理字符
+                write((byte) '?');
+            } else {
+                ensureCapacity(count + 3);
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * 做HTML转义后按 UTF-8 写入
+     */
+    public void writeHtmlEscaped(CharSequence s) {
+        int last = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            String replacement;
+            switch (s.charAt(i)) {
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '&': replacement = "&amp;"; break;
+                case '"': replacement = "&quot;"; break;
+                case '\'': replacement = "&#39;"; break;
+                default: continue;
+            }
+            writeUtf8(s, last, i);
+            writeUtf8(replacement, 0, replacement.length());
+            last = i + 1;
+        }
+        writeUtf8(s, last, length);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, minCapacity));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 响应压缩的配置和 Accept-Encoding 协商
+ * 客户端接受 gzip / deflate 时，把 response 包装成 VincentCompressingResponse，
+ * 小于 minSize 的响应、不在 mimeTypes 里的响应原样输出
+ * @author vincent
+ */
+public class VincentResponseCompression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    public static final String DEFAULT_MIME_TYPES =
+            "text/html,text/plain,text/css,text/xml,application/json,application/javascript,application/xml,image/svg+xml";
+
+    private final int minSize;
+    private final boolean deflateEnabled;
+    private final Set<String> mimeTypes = new LinkedHashSet<String>();
+
+    public VincentResponseCompression(int minSize, String mimeTypes, boolean deflateEnabled) {
+        this.minSize = minSize;
+        this.deflateEnabled = deflateEnabled;
+        for (String mimeType : mimeTypes.split(",")) {
+            if (mimeType.trim().length() > 0) {
+                this.mimeTypes.add(mimeType.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+    }
+
+    /**
+     * 按请求的 Accept-Encoding 包装 response，不需要压缩时返回原来的 response
+     */
+    public HttpServletResponse wrap(HttpServletRequest req, HttpServletResponse resp) {
+        //同一个url的响应会因为 Accept-Encoding 不同而不同，缓存需要知道
+        resp.addHeader("Vary", "Accept-Encoding");
+        String encoding = negotiate(req.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            return resp;
+        }
+        return new VincentCompressingResponse(resp, this, encoding);
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    boolean isCompressible(String contentType) {
+        //没有设置Content-Type的按可压缩处理（例如直接写字节的Controller）
+        if (contentType == null) {
+            return true;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mimeType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ENGLISH);
+        return mimeTypes.contains(mimeType);
+    }
+
+    /**
+     * 选出 q 值最高的编码，q 值相同时 gzip 优先；q=0 表示不接受
+     */
+    String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String token : acceptEncoding.split(",")) {
+            String coding = token;
+            float q = 1;
+            int semicolon = token.indexOf(';');
+            if (semicolon >= 0) {
+                coding = token.substring(0, semicolon);
+                q = parseQuality(token.substring(semicolon + 1));
+            }
+            coding = coding.trim();
+            if (GZIP.equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                gzip = Math.max(gzip, q);
+            } else if (DEFLATE.equalsIgnoreCase(coding)) {
+                deflate = Math.max(deflate, q);
+            } else if ("*".equals(coding)) {
+                any = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (!deflateEnabled) {
+            deflate = 0;
+        }
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    private static float parseQuality(String parameter) {
+        String value = parameter.trim();
+        if (!value.startsWith("q=")) {
+            return 1;
+        }
+        try {
+            return Float.parseFloat(value.substring(2).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static OutputStream compressingStream(String encoding, OutputStream out) throws IOException {
+        if (GZIP.equals(encoding)) {
+            return new GZIPOutputStream(out, 8192);
+        }
+        return new DeflaterOutputStream(out);
+    }
+
+    /**
+     * 一次性压缩，用于缓存不依赖模型的视图输出
+     */
+    public static byte[] compress(String encoding, byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        OutputStream compressing = compressingStream(encoding, out);
+        compressing.write(bytes);
+        compressing.close();
+        return out.toByteArray();
+    }
+}
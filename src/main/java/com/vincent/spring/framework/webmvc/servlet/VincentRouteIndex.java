@@ -0,0 +1,206 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * URL 路由索引
+ * 启动时把所有 HandlerMapping 的 url 按 "/" 切分成段，构建一棵前缀树：
+ * 1、纯文本段（如 query.json）放在 HashMap 里，O(1) 命中
+ * 2、带 * 的段（如 add*.json）只在本段内匹配，不跨 "/"
+ * 3、最后一段为 ** 时匹配剩余的所有段
+ * 同一层的优先级固定为：文本段 > 通配段（字面字符多的优先） > **，与注册顺序、HashMap 顺序无关
+ * 另外对命中的 url 做一个有上限的缓存，热点 url 查找只需一次 map 读
+ * 404 不缓存，否则大量随机的 url 会把热点路由挤出缓存；缓存满了只淘汰一个条目，不整个清空
+ * @author vincent
+ */
+public class VincentRouteIndex {
+
+    private static final String WILDCARD = "*";
+    private static final String MULTI_WILDCARD = "**";
+
+    private final Node root = new Node();
+
+    private final int cacheSize;
+    private final Map<String, VincentHandlerMapping> resolvedCache = new ConcurrentHashMap<String, VincentHandlerMapping>();
+
+    public VincentRouteIndex(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * 注册一个 url，只在启动阶段调用
+     * @return 如果相同的 url 已经注册过，返回已存在的 HandlerMapping，本次注册被忽略
+     */
+    public VincentHandlerMapping register(String url, VincentHandlerMapping mapping) {
+        Node node = root;
+        String[] segments = split(url);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (MULTI_WILDCARD.equals(segment) && i == segments.length - 1) {
+                if (node.rest == null) {
+                    node.rest = new Node();
+                }
+                node = node.rest;
+            } else if (segment.contains(WILDCARD)) {
+                node = node.wildcardChild(segment);
+            } else {
+                Node child = node.literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.literals.put(segment, child);
+                }
+                node = child;
+            }
+        }
+        if (node.mapping != null) {
+            return node.mapping;
+        }
+        node.mapping = mapping;
+        resolvedCache.clear();
+        return null;
+    }
+
+    /**
+     * 根据已经去掉 contextPath 的 url 查找 HandlerMapping，找不到返回 null
+     */
+    public VincentHandlerMapping lookup(String url) {
+        VincentHandlerMapping mapping = resolvedCache.get(url);
+        if (mapping != null) {
+            return mapping;
+        }
+
+        mapping = match(root, url, url.startsWith("/") ? 1 : 0);
+
+        if (mapping != null && cacheSize > 0) {
+            //超过上限时淘汰一个条目，ConcurrentHashMap 的迭代顺序按hash分布，相当于随机淘汰，不需要加锁
+            if (resolvedCache.size() >= cacheSize) {
+                Iterator<String> it = resolvedCache.keySet().iterator();
+                if (it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+            resolvedCache.put(url, mapping);
+        }
+        return mapping;
+    }
+
+    private VincentHandlerMapping match(Node node, String url, int from) {
+        if (from > url.length()) {
+            if (node.mapping == null && node.rest != null) {
+                return node.rest.mapping;
+            }
+            return node.mapping;
+        }
+        int end = url.indexOf('/', from);
+        if (end < 0) {
+            end = url.length();
+        }
+        String segment = url.substring(from, end);
+
+        //1、文本段
+        Node literal = node.literals.get(segment);
+        if (literal != null) {
+            VincentHandlerMapping mapping = match(literal, url, end + 1);
+            if (mapping != null) {
+                return mapping;
+            }
+        }
+
+        //2、段内通配，已按优先级排好序
+        for (SegmentPattern pattern : node.wildcards) {
+            if (!pattern.matches(segment)) {
+                continue;
+            }
+            VincentHandlerMapping mapping = match(pattern.node, url, end + 1);
+            if (mapping != null) {
+                return mapping;
+            }
+        }
+
+        //3、** 吃掉剩下的所有段
+        if (node.rest != null) {
+            return node.rest.mapping;
+        }
+        return null;
+    }
+
+    private static String[] split(String url) {
+        String path = url.startsWith("/") ? url.substring(1) : url;
+        return path.split("/", -1);
+    }
+
+    private static class Node {
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private final List<SegmentPattern> wildcards = new ArrayList<SegmentPattern>();
+        private Node rest;
+        private VincentHandlerMapping mapping;
+
+        private Node wildcardChild(String segment) {
+            for (SegmentPattern pattern : wildcards) {
+                if (pattern.raw.equals(segment)) {
+                    return pattern.node;
+                }
+            }
+            SegmentPattern pattern = new SegmentPattern(segment, new Node());
+            wildcards.add(pattern);
+            Collections.sort(wildcards);
+            return pattern.node;
+        }
+    }
+
+    /**
+     * 段内的通配模式，例如 add*.json 拆成 ["add", ".json"]
+     */
+    private static class SegmentPattern implements Comparable<SegmentPattern> {
+        private final String raw;
+        private final String[] parts;
+        private final int literalLength;
+        private final Node node;
+
+        private SegmentPattern(String raw, Node node) {
+            this.raw = raw;
+            this.node = node;
+            this.parts = raw.split("\\*", -1);
+            int length = 0;
+            for (String part : parts) {
+                length += part.length();
+            }
+            this.literalLength = length;
+        }
+
+        private boolean matches(String segment) {
+            String first = parts[0];
+            String last = parts[parts.length - 1];
+            if (segment.length() < literalLength
+                    || !segment.startsWith(first)
+                    || !segment.endsWith(last)) {
+                return false;
+            }
+            int pos = first.length();
+            int limit = segment.length() - last.length();
+            for (int i = 1; i < parts.length - 1; i++) {
+                int found = segment.indexOf(parts[i], pos);
+                if (found < 0 || found + parts[i].length() > limit) {
+                    return false;
+                }
+                pos = found + parts[i].length();
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(SegmentPattern other) {
+            //字面字符越多越具体
+            if (this.literalLength != other.literalLength) {
+                return other.literalLength - this.literalLength;
+            }
+            //通配符越少越具体
+            if (this.parts.length != other.parts.length) {
+                return this.parts.length - other.parts.length;
+            }
+            return this.raw.compareTo(other.raw);
+        }
+    }
+}
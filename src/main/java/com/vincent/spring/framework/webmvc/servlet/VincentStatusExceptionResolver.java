@@ -0,0 +1,86 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import com.vincent.spring.framework.annotation.VincentResponseStatus;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按异常类型映射状态码，排在解析器链的最后，总是返回结果
+ * 1、配置 exceptionStatusMappings=com.xx.FooException:404,com.xx.BarException:409，子类同样生效
+ * 2、异常类上的 @VincentResponseStatus
+ * 3、都没有时为500
+ * 每个异常类只解析一次，结果缓存，视图名就是状态码，如 404 对应 404.html
+ * @author vincent
+ */
+public class VincentStatusExceptionResolver implements VincentHandlerExceptionResolver {
+
+    //配置的映射，按配置顺序匹配
+    private final Map<Class<?>, Integer> mappings = new LinkedHashMap<Class<?>, Integer>();
+    //异常类 -> 状态码
+    private final Map<Class<?>, Integer> resolvedStatus = new ConcurrentHashMap<Class<?>, Integer>();
+
+    public VincentStatusExceptionResolver() {
+    }
+
+    public VincentStatusExceptionResolver(String mappings) {
+        if (mappings == null) {
+            return;
+        }
+        for (String mapping : mappings.split(",")) {
+            if (mapping.trim().length() == 0) {
+                continue;
+            }
+            int index = mapping.lastIndexOf(':');
+            if (index < 0) {
+                throw new IllegalArgumentException("Illegal exception status mapping : " + mapping);
+            }
+            String className = mapping.substring(0, index).trim();
+            try {
+                addMapping(Class.forName(className), Integer.parseInt(mapping.substring(index + 1).trim()));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Exception class not found : " + className, e);
+            }
+        }
+    }
+
+    public void addMapping(Class<?> exceptionType, int status) {
+        if (!Throwable.class.isAssignableFrom(exceptionType)) {
+            throw new IllegalArgumentException(exceptionType.getName() + " is not an exception");
+        }
+        mappings.put(exceptionType, status);
+        resolvedStatus.clear();
+    }
+
+    @Override
+    public VincentModelAndView resolveException(HttpServletRequest req, HttpServletResponse resp, Throwable ex) {
+        int status = getStatus(ex.getClass());
+        resp.setStatus(status);
+        return new VincentModelAndView(String.valueOf(status));
+    }
+
+    public int getStatus(Class<?> exceptionType) {
+        Integer status = resolvedStatus.get(exceptionType);
+        if (status == null) {
+            status = resolveStatus(exceptionType);
+            resolvedStatus.put(exceptionType, status);
+        }
+        return status;
+    }
+
+    private int resolveStatus(Class<?> exceptionType) {
+        for (Map.Entry<Class<?>, Integer> mapping : mappings.entrySet()) {
+            if (mapping.getKey().isAssignableFrom(exceptionType)) {
+                return mapping.getValue();
+            }
+        }
+        VincentResponseStatus annotation = exceptionType.getAnnotation(VincentResponseStatus.class);
+        if (annotation != null) {
+            return annotation.value();
+        }
+        return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    }
+}
@@ -0,0 +1,117 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译好的模板
+ * 模板只解析一次，拆成静态文本片段和 ￥{name} 占位符，例如：
+ * "a￥{x}b￥{y}" => texts = ["a", "b", ""], names = ["x", "y"]
+ * 渲染时按顺序拼接文本和模型里的值，一遍完成，不再使用正则
+ * @author vincent
+ */
+public class VincentTemplate {
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String PLACEHOLDER_PREFIX = "￥{";
+    private static final String PLACEHOLDER_SUFFIX = "}";
+
+    //textBytes.length == names.length + 1，静态片段预先编码成 UTF-8
+    private final byte[][] textBytes;
+    private final String[] names;
+    private final int staticLength;
+    //模板内容的哈希，模板改变后版本也会改变
+    private final long version;
+
+    private VincentTemplate(String source, String[] texts, String[] names) {
+        this.textBytes = new byte[texts.length][];
+        this.names = names;
+        this.version = VincentHttpCaching.hash(VincentHttpCaching.hashSeed(), source);
+        int length = 0;
+        for (int i = 0; i < texts.length; i++) {
+            textBytes[i] = texts[i].getBytes(UTF_8);
+            length += textBytes[i].length;
+        }
+        this.staticLength = length;
+    }
+
+    public static VincentTemplate compile(File templateFile) throws IOException {
+        return compile(new String(Files.readAllBytes(templateFile.toPath()), UTF_8));
+    }
+
+    public static VincentTemplate compile(String source) {
+        List<String> texts = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+
+        int from = 0;
+        while (true) {
+            int start = source.indexOf(PLACEHOLDER_PREFIX, from);
+            int end = start < 0 ? -1 : source.indexOf(PLACEHOLDER_SUFFIX, start + PLACEHOLDER_PREFIX.length());
+            if (start < 0 || end < 0) {
+                //没有闭合的 ￥{ 当作普通文本
+                texts.add(source.substring(from));
+                break;
+            }
+            texts.add(source.substring(from, start));
+            names.add(source.substring(start + PLACEHOLDER_PREFIX.length(), end).trim());
+            from = end + PLACEHOLDER_SUFFIX.length();
+        }
+        return new VincentTemplate(source, texts.toArray(new String[texts.size()]), names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * @param model      模型，可以为null；缺少的key渲染为空字符串
+     * @param htmlEscape 是否对模型里的值做HTML转义
+     * @param out        静态片段直接写入预先编码好的字节，只有模型里的值需要编码
+     */
+    public void render(Map<String, ?> model, boolean htmlEscape, VincentResponseBuffer out) {
+        out.write(textBytes[0]);
+        for (int i = 0; i < names.length; i++) {
+            Object value = model == null ? null : model.get(names[i]);
+            if (value != null) {
+                String text = value.toString();
+                if (htmlEscape) {
+                    out.writeHtmlEscaped(text);
+                } else {
+                    out.writeUtf8(text);
+                }
+            }
+            out.write(textBytes[i + 1]);
+        }
+    }
+
+    /**
+     * 静态片段的总字节数，可以用来估算输出大小
+     */
+    public int getStaticLength() {
+        return staticLength;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 模板版本 + 模型里被模板用到的值，不渲染就能判断输出是否会变化
+     */
+    public long fingerprint(Map<String, ?> model) {
+        long hash = version;
+        for (String name : names) {
+            Object value = model == null ? null : model.get(name);
+            //null 和空字符串渲染结果相同
+            hash = VincentHttpCaching.hash(hash, value == null ? "" : value.toString());
+            hash = VincentHttpCaching.hash(hash, "\0");
+        }
+        return hash;
+    }
+
+    public String[] getPlaceholderNames() {
+        return names.clone();
+    }
+}
@@ -3,49 +3,99 @@ package com.vincent.spring.framework.webmvc.servlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class VincentView {
 
     private File viewFile;
-    public VincentView(File templateFile) {
+    private boolean htmlEscape;
+    //模板只在创建View时解析一次
+    private VincentTemplate template;
+    //没有占位符的模板，输出和模型无关，启动时渲染好
+    private byte[] staticContent;
+    //staticContent 的ETag
+    private String staticETag;
+    //staticContent 按编码压缩后的结果
+    private final Map<String, byte[]> compressedContent = new ConcurrentHashMap<String, byte[]>();
+
+    public VincentView(File templateFile) throws Exception {
+        this(templateFile, false);
+    }
+
+    public VincentView(File templateFile, boolean htmlEscape) throws Exception {
         this.viewFile = templateFile;
+        this.htmlEscape = htmlEscape;
+        this.template = VincentTemplate.compile(templateFile);
+        if (template.getPlaceholderNames().length == 0) {
+            VincentResponseBuffer buffer = VincentResponseBuffer.acquire();
+            try {
+                template.render(Collections.<String, Object>emptyMap(), htmlEscape, buffer);
+                this.staticContent = buffer.toByteArray();
+                this.staticETag = VincentHttpCaching.weakETag(template.getVersion());
+            } finally {
+                buffer.release();
+            }
+        }
     }
 
     public void render(Map<String, ?> model, HttpServletRequest req, HttpServletResponse resp) throws Exception {
-        StringBuffer sb = new StringBuffer();
-        RandomAccessFile ra = new RandomAccessFile(this.viewFile,"r");
-
-        String line = null;
-        while (null != (line = ra.readLine())){
-            line = new String(line.getBytes("ISO-8859-1"),"utf-8");
-            Pattern pattern = Pattern.compile("￥\\{[^\\}]+\\}",Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(line);
-            while (matcher.find()){
-                String paramName = matcher.group();
-                paramName = paramName.replaceAll("￥\\{|\\}","");
-                Object paramValue = model.get(paramName);
-                line = matcher.replaceFirst(makeStringForRegExp(paramValue.toString()));
-                matcher = pattern.matcher(line);
+        if (staticContent != null) {
+            renderStatic(resp);
+            return;
+        }
+        VincentResponseBuffer buffer = VincentResponseBuffer.acquire();
+        try {
+            template.render(model, htmlEscape, buffer);
+            resp.setCharacterEncoding("utf-8");
+            if(resp.getContentType() == null){
+                resp.setContentType("text/html;charset=utf-8");
             }
-            sb.append(line);
+            //长度已知，容器不需要分块传输
+            resp.setContentLength(buffer.size());
+            buffer.writeTo(resp.getOutputStream());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * 根据模板版本和模型计算的ETag，不需要渲染
+     */
+    public String getETag(Map<String, ?> model) {
+        if (staticETag != null) {
+            return staticETag;
         }
+        return VincentHttpCaching.weakETag(template.fingerprint(model));
+    }
+
+    private void renderStatic(HttpServletResponse resp) throws IOException {
         resp.setCharacterEncoding("utf-8");
-        resp.getWriter().write(sb.toString());
+        if(resp.getContentType() == null){
+            resp.setContentType("text/html;charset=utf-8");
+        }
+        //压缩的 response 可能包在ETag、异步的 response 里面，由外层一层层交给它
+        if (resp instanceof VincentPrecompressedResponse) {
+            VincentPrecompressedResponse precompressed = (VincentPrecompressedResponse) resp;
+            String encoding = precompressed.getPrecompressedEncoding();
+            if (encoding != null) {
+                byte[] compressed = compressedContent.get(encoding);
+                if (compressed == null) {
+                    compressed = VincentResponseCompression.compress(encoding, staticContent);
+                    compressedContent.put(encoding, compressed);
+                }
+                if (precompressed.writePrecompressed(staticContent, compressed)) {
+                    return;
+                }
+            }
+        }
+        resp.setContentLength(staticContent.length);
+        resp.getOutputStream().write(staticContent);
     }
 
-    //处理特殊字符
-    public static String makeStringForRegExp(String str) {
-        return str.replace("\\", "\\\\").replace("*", "\\*")
-                .replace("+", "\\+").replace("|", "\\|")
-                .replace("{", "\\{").replace("}", "\\}")
-                .replace("(", "\\(").replace(")", "\\)")
-                .replace("^", "\\^").replace("$", "\\$")
-                .replace("[", "\\[").replace("]", "\\]")
-                .replace("?", "\\?").replace(",", "\\,")
-                .replace(".", "\\.").replace("&", "\\&");
+    public File getViewFile() {
+        return viewFile;
     }
 }
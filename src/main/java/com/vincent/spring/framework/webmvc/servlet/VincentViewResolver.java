@@ -1,20 +1,176 @@
 package com.vincent.spring.framework.webmvc.servlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 视图解析
+ * 解析过的视图（已经编译好的模板）按视图名缓存，请求时不再访问文件系统
+ * 开发模式下用 WatchService 监听模板目录，模板修改、删除后让对应的缓存失效
+ * 生产模式（productionMode = true）不启动监听，模板在第一次解析后就不会再变
+ * 不存在的模板返回null，同样缓存下来，比如没有配置 400.html 时错误处理不会每次都访问文件系统
+ */
 public class VincentViewResolver {
 
     private final String DEFAULT_TEMPLATE_SUFFIX = ".html";
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
     private File tempateRootDir;
+    //是否对模型里的值做HTML转义
+    private boolean htmlEscape;
+
+    //视图名 -> 视图，请求里的名字（如 404）和文件名（如 404.html）都可能作为key
+    private final Map<String, VincentView> viewCache = new ConcurrentHashMap<String, VincentView>();
+    //不存在的模板文件名
+    private final Set<String> missingViews = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    private WatchService watchService;
+    private Thread watchThread;
+
     public VincentViewResolver(String templateRoot) {
+        this(templateRoot, false);
+    }
+
+    public VincentViewResolver(String templateRoot, boolean htmlEscape) {
         String templateRootPath = this.getClass().getClassLoader().getResource(templateRoot).getFile();
         tempateRootDir = new File(templateRootPath);
+        this.htmlEscape = htmlEscape;
     }
 
-    public VincentView resolveViewName(String viewName){
+    public VincentView resolveViewName(String viewName) throws Exception {
         if(null == viewName || "".equals(viewName.trim())){return null;}
-        viewName = viewName.endsWith(DEFAULT_TEMPLATE_SUFFIX)? viewName : (viewName + DEFAULT_TEMPLATE_SUFFIX);
-        File templateFile = new File((tempateRootDir.getPath() + "/" + viewName).replaceAll("/+","/"));
-        return new VincentView(templateFile);
+
+        VincentView view = viewCache.get(viewName);
+        if (view != null) {
+            return view;
+        }
+
+        String fileName = viewName.endsWith(DEFAULT_TEMPLATE_SUFFIX)? viewName : (viewName + DEFAULT_TEMPLATE_SUFFIX);
+        if (missingViews.contains(fileName)) {
+            return null;
+        }
+        view = viewCache.get(fileName);
+        if (view == null) {
+            File templateFile = new File((tempateRootDir.getPath() + "/" + fileName).replaceAll("/+","/"));
+            if (!templateFile.isFile()) {
+                if (cacheSize > 0) {
+                    if (missingViews.size() >= cacheSize) {
+                        missingViews.clear();
+                    }
+                    missingViews.add(fileName);
+                }
+                return null;
+            }
+            view = new VincentView(templateFile, htmlEscape);
+            cache(fileName, view);
+        }
+        cache(viewName, view);
+        return view;
+    }
+
+    /**
+     * 启动时把模板目录下的所有模板编译好放进缓存
+     */
+    public void warmUp() throws Exception {
+        File[] files = tempateRootDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(DEFAULT_TEMPLATE_SUFFIX)) {
+                resolveViewName(file.getName());
+            }
+        }
+    }
+
+    /**
+     * 监听模板目录，模板变化时让缓存失效
+     */
+    public void startWatching() throws IOException {
+        if (watchService != null || !tempateRootDir.isDirectory()) {
+            return;
+        }
+        final Path root = tempateRootDir.toPath();
+        watchService = root.getFileSystem().newWatchService();
+        root.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+        watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        WatchKey key = watchService.take();
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                                viewCache.clear();
+                                missingViews.clear();
+                                continue;
+                            }
+                            evict(((Path) event.context()).toString());
+                        }
+                        if (!key.reset()) {
+                            viewCache.clear();
+                            missingViews.clear();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ClosedWatchServiceException e) {
+                    //resolver已经关闭
+                }
+            }
+        }, "vincent-template-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public void close() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        watchThread.interrupt();
+        watchService = null;
+        watchThread = null;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    private void cache(String viewName, VincentView view) {
+        if (cacheSize <= 0) {
+            return;
+        }
+        //超过上限直接清空
+        if (viewCache.size() >= cacheSize) {
+            viewCache.clear();
+        }
+        viewCache.put(viewName, view);
+    }
+
+    private void evict(String fileName) {
+        missingViews.remove(fileName);
+        Iterator<VincentView> it = viewCache.values().iterator();
+        while (it.hasNext()) {
+            if (fileName.equals(it.next().getViewFile().getName())) {
+                it.remove();
+            }
+        }
     }
 }
@@ -0,0 +1,62 @@
+package com.vincent.spring.framework.webmvc.resource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * VincentResourceHandler.parseRange：null 表示忽略Range返回整个文件，空数组表示416
+ * @author vincent
+ */
+public class VincentResourceHandlerTest {
+
+    @Test
+    public void closedRange() {
+        assertArrayEquals(new long[]{0, 9}, VincentResourceHandler.parseRange("bytes=0-9", 100));
+        //结束位置超过文件长度时截到最后一个字节
+        assertArrayEquals(new long[]{90, 99}, VincentResourceHandler.parseRange("bytes=90-200", 100));
+    }
+
+    @Test
+    public void openRange() {
+        assertArrayEquals(new long[]{10, 99}, VincentResourceHandler.parseRange("bytes=10-", 100));
+        assertArrayEquals(new long[]{99, 99}, VincentResourceHandler.parseRange("bytes=99-", 100));
+    }
+
+    @Test
+    public void openRangeStartingAtOrAfterEndIsUnsatisfiable() {
+        assertEquals(0, VincentResourceHandler.parseRange("bytes=100-", 100).length);
+        assertEquals(0, VincentResourceHandler.parseRange("bytes=150-", 100).length);
+        assertEquals(0, VincentResourceHandler.parseRange("bytes=0-", 0).length);
+    }
+
+    @Test
+    public void suffixRange() {
+        assertArrayEquals(new long[]{90, 99}, VincentResourceHandler.parseRange("bytes=-10", 100));
+        //比文件长时返回整个文件
+        assertArrayEquals(new long[]{0, 99}, VincentResourceHandler.parseRange("bytes=-500", 100));
+    }
+
+    @Test
+    public void emptySuffixRangeIsUnsatisfiable() {
+        assertEquals(0, VincentResourceHandler.parseRange("bytes=-0", 100).length);
+        assertEquals(0, VincentResourceHandler.parseRange("bytes=-10", 0).length);
+    }
+
+    @Test
+    public void multipleRangesFallBackToWholeFile() {
+        assertNull(VincentResourceHandler.parseRange("bytes=0-9,20-29", 100));
+        assertNull(VincentResourceHandler.parseRange("bytes=-10, 0-1", 100));
+    }
+
+    @Test
+    public void malformedRangesAreIgnored() {
+        assertNull(VincentResourceHandler.parseRange("items=0-9", 100));
+        assertNull(VincentResourceHandler.parseRange("bytes=9", 100));
+        assertNull(VincentResourceHandler.parseRange("bytes=9-0", 100));
+        assertNull(VincentResourceHandler.parseRange("bytes=a-b", 100));
+        assertNull(VincentResourceHandler.parseRange("bytes=-", 100));
+    }
+}
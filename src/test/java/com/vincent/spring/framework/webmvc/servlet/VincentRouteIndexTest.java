@@ -0,0 +1,131 @@
+package com.vincent.spring.framework.webmvc.servlet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * VincentRouteIndex：同一层 文本段 > 通配段（字面字符多的优先） > **，和注册顺序无关；
+ * 优先的分支在后面的段匹配不上时回溯到下一个候选
+ * @author vincent
+ */
+public class VincentRouteIndexTest {
+
+    @Test
+    public void literalSegmentBeatsWildcard() {
+        VincentRouteIndex index = index("/web/add*.json", "/web/addUser.json");
+        assertEquals("/web/addUser.json", lookup(index, "/web/addUser.json"));
+        assertEquals("/web/add*.json", lookup(index, "/web/addRole.json"));
+    }
+
+    @Test
+    public void moreLiteralCharactersWin() {
+        VincentRouteIndex index = index("/web/*.json", "/web/add*.json", "/web/add*Role*.json");
+        assertEquals("/web/add*Role*.json", lookup(index, "/web/addRoleX.json"));
+        assertEquals("/web/add*.json", lookup(index, "/web/addUser.json"));
+        assertEquals("/web/*.json", lookup(index, "/web/query.json"));
+    }
+
+    @Test
+    public void precedenceDoesNotDependOnRegistrationOrder() {
+        VincentRouteIndex forward = index("/web/**", "/web/*.json", "/web/query.json");
+        VincentRouteIndex backward = index("/web/query.json", "/web/*.json", "/web/**");
+        for (VincentRouteIndex index : new VincentRouteIndex[]{forward, backward}) {
+            assertEquals("/web/query.json", lookup(index, "/web/query.json"));
+            assertEquals("/web/*.json", lookup(index, "/web/add.json"));
+            assertEquals("/web/**", lookup(index, "/web/add.html"));
+        }
+    }
+
+    @Test
+    public void wildcardStaysWithinOneSegment() {
+        VincentRouteIndex index = index("/web/*.json", "/web/**");
+        assertEquals("/web/*.json", lookup(index, "/web/a.json"));
+        assertEquals("/web/**", lookup(index, "/web/a/b.json"));
+    }
+
+    @Test
+    public void doubleWildcardMatchesZeroOrMoreSegments() {
+        VincentRouteIndex index = index("/files/**");
+        assertEquals("/files/**", lookup(index, "/files"));
+        assertEquals("/files/**", lookup(index, "/files/"));
+        assertEquals("/files/**", lookup(index, "/files/a/b/c.txt"));
+        assertNull(index.lookup("/filesx"));
+    }
+
+    @Test
+    public void literalBranchBacktracksToWildcard() {
+        VincentRouteIndex index = index("/api/users/list", "/api/*/detail");
+        assertEquals("/api/users/list", lookup(index, "/api/users/list"));
+        assertEquals("/api/*/detail", lookup(index, "/api/users/detail"));
+    }
+
+    @Test
+    public void wildcardBranchBacktracksToLessSpecificWildcard() {
+        VincentRouteIndex index = index("/x/ab*/two", "/x/a*/one");
+        assertEquals("/x/a*/one", lookup(index, "/x/abc/one"));
+        assertEquals("/x/ab*/two", lookup(index, "/x/abc/two"));
+    }
+
+    @Test
+    public void backtracksToDoubleWildcard() {
+        VincentRouteIndex index = index("/api/users/list", "/api/*/detail", "/api/**");
+        assertEquals("/api/**", lookup(index, "/api/users/other"));
+        assertEquals("/api/**", lookup(index, "/api/users/list/more"));
+    }
+
+    @Test
+    public void unmatchedUrlReturnsNull() {
+        VincentRouteIndex index = index("/web/query.json", "/web/add*.json");
+        assertNull(index.lookup("/web/delete.json"));
+        assertNull(index.lookup("/other/query.json"));
+        assertNull(index.lookup("/web/query.json/more"));
+    }
+
+    @Test
+    public void duplicateRegistrationKeepsFirstMapping() {
+        VincentRouteIndex index = new VincentRouteIndex(16);
+        VincentHandlerMapping first = new VincentHandlerMapping("/web/query.json", null, null);
+        VincentHandlerMapping second = new VincentHandlerMapping("/web/query.json", null, null);
+        assertNull(index.register(first.getUrl(), first));
+        assertSame(first, index.register(second.getUrl(), second));
+        assertSame(first, index.lookup("/web/query.json"));
+    }
+
+    @Test
+    public void cachedLookupsStayCorrectWhenCacheIsFull() {
+        VincentRouteIndex index = new VincentRouteIndex(1);
+        register(index, "/web/query.json", "/web/*.json");
+        for (int i = 0; i < 3; i++) {
+            assertEquals("/web/query.json", lookup(index, "/web/query.json"));
+            assertEquals("/web/*.json", lookup(index, "/web/add.json"));
+        }
+    }
+
+    @Test
+    public void registrationInvalidatesCachedLookups() {
+        VincentRouteIndex index = index("/web/*.json");
+        assertEquals("/web/*.json", lookup(index, "/web/query.json"));
+        register(index, "/web/query.json");
+        assertEquals("/web/query.json", lookup(index, "/web/query.json"));
+    }
+
+    private static VincentRouteIndex index(String... urls) {
+        VincentRouteIndex index = new VincentRouteIndex(16);
+        register(index, urls);
+        return index;
+    }
+
+    private static void register(VincentRouteIndex index, String... urls) {
+        for (String url : urls) {
+            assertNull(index.register(url, new VincentHandlerMapping(url, null, null)));
+        }
+    }
+
+    private static String lookup(VincentRouteIndex index, String url) {
+        VincentHandlerMapping mapping = index.lookup(url);
+        return mapping == null ? null : mapping.getUrl();
+    }
+}